@@ -0,0 +1,234 @@
+import java.lang.System.Logger.Level;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/** 
+ * The objects of this class keep a bounded pool of boards ready to be played (a puzzle and
+ * a shuffled grid of it), so that starting a game never has to build and shuffle a puzzle.
+ *
+ * Whenever the number of boards in the pool drops to the low watermark, a virtual thread
+ * refills it up to the high watermark. Taking a board from the pool is O(1); if the pool is
+ * empty the board is built by the caller and counted as a miss. If the supplier of puzzles
+ * fails, the failure is logged and the refilling thread tries again after a pause.
+ */
+public class BoardPool implements AutoCloseable {
+
+    private static final System.Logger LOGGER = System.getLogger(BoardPool.class.getName());
+
+    //The pauses after a failure of the supplier, doubled after each failure in a row
+    private static final long FIRST_PAUSE_MILLIS = 10;
+    private static final long MAX_PAUSE_MILLIS = 1000;
+
+    //Builds the puzzles of the boards
+    private final Supplier<Puzzle> puzzles;
+
+    //The boards ready to be played
+    private final ArrayBlockingQueue<Board> boards;
+
+    //When the pool is refilled and up to how many boards
+    private final int lowWatermark;
+    private final int highWatermark;
+
+    //Indicates if a virtual thread is refilling the pool
+    private final AtomicBoolean refilling;
+
+    //Indicates if the pool was closed
+    private volatile boolean closed;
+
+    //The number of boards taken from the pool and built by the caller, respectively
+    private final LongAdder hits;
+    private final LongAdder misses;
+
+    //The number of boards the refilling thread failed to build
+    private final LongAdder failures;
+
+    /** 
+     * Builds a pool with the puzzles of PuzzleTables of the given size and language, chosen
+     * at random.
+     *
+     * @param size          the number of characters of the words of the puzzles
+     * @param inEnglish     if the puzzles are in english (or in portuguese)
+     * @param lowWatermark  the number of boards at or below which the pool is refilled
+     * @param highWatermark the maximum number of boards of the pool
+     * @requires {@code size is 5 or 7 && 0 <= lowWatermark && lowWatermark < highWatermark}
+     */
+    public BoardPool(int size, boolean inEnglish, int lowWatermark, int highWatermark) {
+        this(randomPuzzles(PuzzleTables.of(size, inEnglish)), lowWatermark, highWatermark);
+    }
+
+    /** 
+     * Builds a pool with the puzzles given by a supplier and starts filling it.
+     *
+     * @param puzzles       the supplier of the puzzles of the boards, which must be safe to
+     *                      call from several threads
+     * @param lowWatermark  the number of boards at or below which the pool is refilled
+     * @param highWatermark the maximum number of boards of the pool
+     * @requires {@code puzzles != null && 0 <= lowWatermark && lowWatermark < highWatermark}
+     */
+    public BoardPool(Supplier<Puzzle> puzzles, int lowWatermark, int highWatermark) {
+        this.puzzles = puzzles;
+        this.boards = new ArrayBlockingQueue<>(highWatermark);
+        this.lowWatermark = lowWatermark;
+        this.highWatermark = highWatermark;
+        this.refilling = new AtomicBoolean();
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+        this.failures = new LongAdder();
+        refill();
+    }
+
+    /** 
+     * Takes a board from the pool, or builds one if the pool is empty.
+     *
+     * @return a board ready to be played, which is not given to anyone else
+     */
+    public Board take() {
+        Board board = this.boards.poll();
+
+        if (board == null) {
+            this.misses.increment();
+            board = newBoard();
+        }
+        else {
+            this.hits.increment();
+        }
+        if (this.boards.size() <= this.lowWatermark) {
+            refill();
+        }
+        return board;
+    }
+
+    /** 
+     * @return the number of boards ready in the pool
+     */
+    public int available() {
+        return this.boards.size();
+    }
+
+    /** 
+     * @return the number of boards taken from the pool
+     */
+    public long hits() {
+        return this.hits.sum();
+    }
+
+    /** 
+     * @return the number of boards that had to be built because the pool was empty
+     */
+    public long misses() {
+        return this.misses.sum();
+    }
+
+    /** 
+     * @return the number of boards the refilling thread failed to build because the supplier
+     *         threw an exception
+     */
+    public long failures() {
+        return this.failures.sum();
+    }
+
+    /** 
+     * Stops refilling the pool. The boards left can still be taken.
+     */
+    @Override
+    public void close() {
+        this.closed = true;
+    }
+
+    /** 
+     * Starts a virtual thread that fills the pool up to the high watermark, unless one is
+     * already doing it or the pool was closed.
+     */
+    private void refill() {
+        if (!this.closed && this.refilling.compareAndSet(false, true)) {
+            Thread.ofVirtual().name("board-pool-refill").start(() -> {
+                try {
+                    fill();
+                }
+                finally {
+                    this.refilling.set(false);
+                }
+                //boards taken after the last check must not leave the pool at the low mark
+                if (this.boards.size() <= this.lowWatermark) {
+                    refill();
+                }
+            });
+        }
+    }
+
+    /** 
+     * Adds boards to the pool until it is full or closed. A board that cannot be built is
+     * logged and tried again after a pause, which doubles with each failure in a row.
+     */
+    private void fill() {
+        long pauseMillis = FIRST_PAUSE_MILLIS;
+        boolean done = false;
+
+        while (!this.closed && !done) {
+            try {
+                done = this.boards.size() >= this.highWatermark ||
+                       !this.boards.offer(newBoard());
+                pauseMillis = FIRST_PAUSE_MILLIS;
+            } catch (RuntimeException e) {
+                this.failures.increment();
+                LOGGER.log(Level.WARNING, "cannot build a board, trying again in {0} ms: {1}",
+                           pauseMillis, e);
+                try {
+                    Thread.sleep(pauseMillis);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    done = true;
+                }
+                pauseMillis = Math.min(2 * pauseMillis, MAX_PAUSE_MILLIS);
+            }
+        }
+    }
+
+    /** 
+     * @return a new board with a puzzle of the supplier and a shuffled grid of it
+     */
+    private Board newBoard() {
+        Puzzle puzzle = this.puzzles.get();
+        return new Board(puzzle, puzzle.getShuffledGrid());
+    }
+
+    /** 
+     * @param tables the puzzles of a size and language
+     * @return a supplier of random puzzles of the tables
+     */
+    private static Supplier<Puzzle> randomPuzzles(PuzzleTables tables) {
+        return () -> tables.puzzle(ThreadLocalRandom.current().nextInt(tables.nrPuzzles()));
+    }
+
+    /** 
+     * The objects of this class are the boards of the pool: a puzzle and a shuffled grid.
+     */
+    public static class Board {
+
+        //The puzzle and the shuffled grid of it
+        private final Puzzle puzzle;
+        private final char[][] grid;
+
+        private Board(Puzzle puzzle, char[][] grid) {
+            this.puzzle = puzzle;
+            this.grid = grid;
+        }
+
+        /** 
+         * @return the puzzle of the board
+         */
+        public Puzzle puzzle() {
+            return this.puzzle;
+        }
+
+        /** 
+         * @return the shuffled grid of the board, ready to start a WaffleGame
+         */
+        public char[][] grid() {
+            return this.grid;
+        }
+    }
+}
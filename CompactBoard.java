@@ -0,0 +1,249 @@
+import java.util.Arrays;
+
+/** 
+ * The objects of this class represent grids of the Waffle Game in a compact form: only the
+ * positions with letters are kept, each one as a 5 bit code ('A' is 0 and 'Z' is 25),
+ * packed 12 to a long. A grid of size 5 fits in 2 longs and one of size 7 in 4.
+ *
+ * The letters are numbered row by row, skipping the positions with a *. Swapping,
+ * comparing and hashing boards are bit operations over those longs.
+ */
+public class CompactBoard {
+
+    //The number of bits of each letter and the number of letters in each long
+    private static final int BITS = 5;
+    private static final int LETTERS_PER_LONG = 12;
+
+    //The bits of one letter
+    private static final long LETTER_MASK = (1L << BITS) - 1;
+
+    //The number of rows and columns of the grid
+    private final int size;
+
+    //The numbers of the letters of the positions of the grid
+    private final GridTopology topology;
+
+    //The codes of the letters
+    private final long[] letters;
+
+    /** 
+     * Builds the compact form of a grid.
+     *
+     * @param grid the grid
+     * @requires {@code grid is a square matrix with a * in the positions with both indexes
+     *            odd and an uppercase letter between A and Z in every other position}
+     */
+    public CompactBoard(char[][] grid) {
+        this.size = grid.length;
+        this.topology = GridTopology.of(grid.length);
+        this.letters = new long[nrLongs(grid.length)];
+        pack(grid);
+    }
+
+    /** 
+     * Builds a copy of a compact board.
+     *
+     * @param other the board to copy
+     */
+    public CompactBoard(CompactBoard other) {
+        this.size = other.size;
+        this.topology = other.topology;
+        this.letters = other.letters.clone();
+    }
+
+    /** 
+     * Builds a board from the longs with the codes of its letters.
+     *
+     * @param size    the number of rows and columns of the grid
+     * @param letters the codes of the letters, as given by toLongs()
+     * @requires {@code letters.length == nrLongs(size) && every code is between 0 and 25}
+     */
+    public CompactBoard(int size, long[] letters) {
+        this.size = size;
+        this.topology = GridTopology.of(size);
+        this.letters = letters.clone();
+    }
+
+    /** 
+     * @param size the number of rows and columns of a grid
+     * @return the number of longs needed to keep the letters of a grid of the given size
+     */
+    public static int nrLongs(int size) {
+        return (nrLetters(size) + LETTERS_PER_LONG - 1) / LETTERS_PER_LONG;
+    }
+
+    /** 
+     * @return a copy of the longs with the codes of the letters
+     */
+    public long[] toLongs() {
+        return this.letters.clone();
+    }
+
+    /** 
+     * @param size the number of rows and columns of a grid
+     * @return the number of positions with letters in a grid of the given size
+     */
+    public static int nrLetters(int size) {
+        return GridTopology.of(size).nrLetters();
+    }
+
+    /** 
+     * @return the number of rows and columns of the grid
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /** 
+     * @param row the row
+     * @param col the column
+     * @return the character in the given position of the grid (* if it has no letter)
+     * @requires {@code 1 <= row && row <= size() && 1 <= col && col <= size()}
+     */
+    public char letterAt(int row, int col) {
+        char letter = '*';
+        if (this.topology.isLetter(row - 1, col - 1)) {
+            letter = (char) ('A' + get(this.topology.letterIndex(row - 1, col - 1)));
+        }
+        return letter;
+    }
+
+    /** 
+     * Swaps 2 letters of the grid.
+     *
+     * @param row1 the row of the first letter
+     * @param col1 the column of the first letter
+     * @param row2 the row of the second letter
+     * @param col2 the column of the second letter
+     * @requires {@code both positions have letters}
+     */
+    public void swap(int row1, int col1, int row2, int col2) {
+        swapLetters(this.topology.letterIndex(row1 - 1, col1 - 1),
+                    this.topology.letterIndex(row2 - 1, col2 - 1));
+    }
+
+    /** 
+     * @param k the number of a letter, counting the positions with letters row by row
+     * @return the letter
+     * @requires {@code 0 <= k && k < nrLetters(size())}
+     */
+    char letter(int k) {
+        return (char) ('A' + get(k));
+    }
+
+    /** 
+     * Swaps 2 letters of the grid, given by their numbers.
+     *
+     * @param k1 the number of the first letter
+     * @param k2 the number of the second letter
+     * @requires {@code 0 <= k1, k2 < nrLetters(size())}
+     */
+    void swapLetters(int k1, int k2) {
+        long code1 = get(k1);
+        set(k1, get(k2));
+        set(k2, code1);
+    }
+
+    /** 
+     * Replaces the letters of the grid with the ones of a matrix of characters.
+     *
+     * @param grid the matrix
+     * @requires {@code grid is a square matrix with size() rows, a * in the positions with
+     *            both indexes odd and an uppercase letter between A and Z in every other one}
+     */
+    void copyFrom(char[][] grid) {
+        pack(grid);
+    }
+
+    /** 
+     * Packs the codes of the letters of a matrix of characters into the longs.
+     *
+     * @param grid the matrix
+     */
+    private void pack(char[][] grid) {
+        int k = 0;
+        for (int i = 0; i < this.size; i++) {
+            for (int j = 0; j < this.size; j++) {
+                if (this.topology.isLetter(i, j)) {
+                    set(k, grid[i][j] - 'A');
+                    k++;
+                }
+            }
+        }
+    }
+
+    /** 
+     * Replaces the letters of the grid with the ones of another board.
+     *
+     * @param other the board
+     * @requires {@code other.size() == size()}
+     */
+    void copyFrom(CompactBoard other) {
+        System.arraycopy(other.letters, 0, this.letters, 0, this.letters.length);
+    }
+
+    /** 
+     * @return the grid as a matrix of characters, with * in the positions without letters
+     */
+    public char[][] toGrid() {
+        char[][] grid = new char[this.size][this.size];
+        copyInto(grid);
+        return grid;
+    }
+
+    /** 
+     * Writes the grid in an existing matrix of characters.
+     *
+     * @param grid the matrix
+     * @requires {@code grid is a square matrix with size() rows}
+     */
+    public void copyInto(char[][] grid) {
+        int k = 0;
+        for (int i = 0; i < this.size; i++) {
+            for (int j = 0; j < this.size; j++) {
+                if (!this.topology.isLetter(i, j)) {
+                    grid[i][j] = '*';
+                }
+                else {
+                    grid[i][j] = (char) ('A' + get(k));
+                    k++;
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof CompactBoard &&
+               this.size == ((CompactBoard) other).size &&
+               Arrays.equals(this.letters, ((CompactBoard) other).letters);
+    }
+
+    @Override
+    public int hashCode() {
+        long hash = this.size;
+        for (long bits : this.letters) {
+            hash = hash * 0x9E3779B97F4A7C15L + bits;
+        }
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    /** 
+     * @param k the number of the letter
+     * @return the code of the letter
+     */
+    private long get(int k) {
+        int shift = k % LETTERS_PER_LONG * BITS;
+        return (this.letters[k / LETTERS_PER_LONG] >>> shift) & LETTER_MASK;
+    }
+
+    /** 
+     * @param k    the number of the letter
+     * @param code the new code of the letter
+     */
+    private void set(int k, long code) {
+        int shift = k % LETTERS_PER_LONG * BITS;
+        this.letters[k / LETTERS_PER_LONG] = 
+            (this.letters[k / LETTERS_PER_LONG] & ~(LETTER_MASK << shift)) | (code << shift);
+    }
+}
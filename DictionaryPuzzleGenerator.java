@@ -0,0 +1,340 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/** 
+ * The objects of this class generate new puzzles for the Waffle Game from a list of words.
+ *
+ * The words are indexed by the letter they have in each position: for every position and
+ * letter there is a bitset of the words with that letter in that position, so the words
+ * that respect all the letters already fixed by the crossing words are found with a bitwise
+ * AND. The words are placed in the order h1, v1, h2, v2, ... and the search for each first
+ * horizontal word runs as a separate fork/join task. The first words are searched in batches
+ * until there are enough puzzles, and the search of a first word gives up after placing
+ * MAX_PLACED_PER_FIRST_WORD words, so first words that lead nowhere cost little.
+ */
+public class DictionaryPuzzleGenerator {
+
+    //The number of letters of the alphabet used in the words of the puzzles ('A' to 'Z')
+    private static final int ALPHABET = 26;
+
+    //The number of first words searched sequentially by each fork/join task
+    private static final int WORDS_PER_TASK = 4;
+
+    //The number of first words of the first batch searched; each batch doubles the last one
+    private static final int FIRST_BATCH = 64;
+
+    //The maximum number of words placed in the search of each first word
+    private static final int MAX_PLACED_PER_FIRST_WORD = 1 << 14;
+
+    //The number of characters of the words
+    private final int size;
+
+    //The words of the dictionary with the right size, without repetitions
+    private final String[] words;
+
+    //For each position and letter (position * ALPHABET + letter), the bitset of the words
+    private final long[][] index;
+
+    //The bitset with every word of the dictionary
+    private final long[] allWords;
+
+    /** 
+     * Builds a generator with the words of the given list that have the given size and only
+     * have uppercase letters between A and Z.
+     *
+     * @param size  the number of characters of the words of the puzzles
+     * @param words the list of words
+     * @requires {@code words != null && size is 5 or 7}
+     */
+    public DictionaryPuzzleGenerator(int size, String[] words) {
+        Set<String> validWords = new LinkedHashSet<>();
+        for (String word : words) {
+            if (word != null && word.length() == size && isUpperCaseWord(word)) {
+                validWords.add(word);
+            }
+        }
+        this.size = size;
+        this.words = validWords.toArray(new String[0]);
+
+        int bitsetLength = (this.words.length + 63) / 64;
+        this.index = new long[size * ALPHABET][bitsetLength];
+        this.allWords = new long[bitsetLength];
+
+        for (int w = 0; w < this.words.length; w++) {
+            this.allWords[w >>> 6] |= 1L << w;
+            for (int p = 0; p < size; p++) {
+                this.index[p * ALPHABET + this.words[w].charAt(p) - 'A'][w >>> 6] |= 1L << w;
+            }
+        }
+    }
+
+    /** 
+     * @return the number of words of the dictionary that can be used in the puzzles
+     */
+    public int nrWords() {
+        return this.words.length;
+    }
+
+    /** 
+     * Generates distinct puzzles using every available processor. The same seed and
+     * dictionary always generate the same puzzles, in the same order.
+     *
+     * @param count the maximum number of puzzles to generate
+     * @param seed  the seed that chooses the order in which the words are tried
+     * @return at most count distinct puzzles, each one as {hWords, vWords}; there are fewer
+     *         only if the dictionary does not allow more or their search gives up
+     * @ensures {@code every puzzle respects Puzzle.validWords and Puzzle.overlappedWords,
+     *           no puzzle repeats a word}
+     */
+    public List<String[][]> generate(int count, long seed) {
+        long start = System.nanoTime();
+        SplittableRandom r = new SplittableRandom(seed);
+        int[] firstWords = new int[this.words.length];
+
+        for (int w = 0; w < firstWords.length; w++) {
+            firstWords[w] = w;
+        }
+        for (int w = firstWords.length - 1; w > 0; w--) {
+            int other = r.nextInt(w + 1);
+            int aux = firstWords[w];
+            firstWords[w] = firstWords[other];
+            firstWords[other] = aux;
+        }
+
+        //each first word gets a share of the puzzles, with room for the ones that find fewer
+        int perFirstWord = firstWords.length == 0 ? 0 :
+                           Math.max(1, (int) Math.min(Integer.MAX_VALUE,
+                                                      2L * count / firstWords.length + 1));
+        List<String[][]> puzzles = new ArrayList<>();
+        int batch = FIRST_BATCH;
+        for (int from = 0; from < firstWords.length && puzzles.size() < count; from += batch) {
+            if (from > 0) {
+                batch = (int) Math.min(Integer.MAX_VALUE, 2L * batch);
+            }
+            int to = (int) Math.min(firstWords.length, (long) from + batch);
+            List<String[][]> found = ForkJoinPool.commonPool().invoke(
+                new SearchTask(firstWords, from, to, perFirstWord, r.nextLong()));
+
+            for (int p = 0; p < found.size() && puzzles.size() < count; p++) {
+                puzzles.add(found.get(p));
+            }
+        }
+        GameMetrics.get().recordGeneration(System.nanoTime() - start);
+        return puzzles;
+    }
+
+    /** 
+     * Generates puzzles from the words of a file (one word per line) and prints how many
+     * are generated per second, for the sizes 5 and 7.
+     *
+     * @param args the file with the words and, optionally, the number of puzzles to generate
+     * @throws IOException if the file cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        String[] words = Files.readAllLines(Paths.get(args[0])).stream()
+                              .map(String::trim).map(String::toUpperCase).toArray(String[]::new);
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+
+        for (int size = 5; size <= 7; size += 2) {
+            DictionaryPuzzleGenerator generator = new DictionaryPuzzleGenerator(size, words);
+            //the first run warms up the JVM
+            for (int run = 0; run < 2; run++) {
+                long start = System.nanoTime();
+                List<String[][]> puzzles = generator.generate(count, run);
+                double seconds = (System.nanoTime() - start) / 1e9;
+
+                if (run == 1) {
+                    System.out.printf("size %d (%d words): %d puzzles in %.3f s, %.0f per second%n",
+                                      size, generator.nrWords(), puzzles.size(), seconds,
+                                      puzzles.size() / seconds);
+                }
+            }
+        }
+    }
+
+    /** 
+     * @param word the word
+     * @return true if the word only has uppercase letters between A and Z or false if not
+     */
+    private static boolean isUpperCaseWord(String word) {
+        boolean isUpperCase = true;
+        for (int i = 0; i < word.length() && isUpperCase; i++) {
+            isUpperCase = word.charAt(i) >= 'A' && word.charAt(i) <= 'Z';
+        }
+        return isUpperCase;
+    }
+
+    /** 
+     * The task that searches the puzzles that start with a range of first horizontal words,
+     * splitting the range in halves until it is small enough.
+     */
+    @SuppressWarnings("serial")
+    private class SearchTask extends RecursiveTask<List<String[][]>> {
+
+        //The first horizontal words to search and the range of this task
+        private final int[] firstWords;
+        private final int from;
+        private final int to;
+
+        //The maximum number of puzzles to find for each first horizontal word
+        private final int perFirstWord;
+
+        //The seed of the random that chooses where the search of candidates starts
+        private final long seed;
+
+        //The indexes of the words placed, in the order h1, v1, h2, v2, ...
+        private int[] placed;
+
+        //The bitset of the candidates for each word, reused along the search
+        private long[][] candidates;
+
+        //The puzzles found by this task
+        private List<String[][]> found;
+
+        //The number of words placed in the search of the current first word
+        private int nrPlaced;
+
+        SearchTask(int[] firstWords, int from, int to, int perFirstWord, long seed) {
+            this.firstWords = firstWords;
+            this.from = from;
+            this.to = to;
+            this.perFirstWord = perFirstWord;
+            this.seed = seed;
+        }
+
+        @Override
+        protected List<String[][]> compute() {
+            if (this.to - this.from > WORDS_PER_TASK) {
+                int middle = (this.from + this.to) >>> 1;
+                SplittableRandom r = new SplittableRandom(this.seed);
+                SearchTask left = new SearchTask(this.firstWords, this.from, middle,
+                                                 this.perFirstWord, r.nextLong());
+                SearchTask right = new SearchTask(this.firstWords, middle, this.to,
+                                                  this.perFirstWord, r.nextLong());
+                left.fork();
+                List<String[][]> rightFound = right.compute();
+                List<String[][]> leftFound = left.join();
+                leftFound.addAll(rightFound);
+                return leftFound;
+            }
+
+            SplittableRandom r = new SplittableRandom(this.seed);
+            this.placed = new int[size + 1];
+            this.candidates = new long[size + 1][allWords.length];
+            this.found = new ArrayList<>();
+
+            for (int w = this.from; w < this.to; w++) {
+                int before = this.found.size();
+                this.placed[0] = this.firstWords[w];
+                this.nrPlaced = 0;
+                search(1, before + this.perFirstWord, r);
+            }
+            return this.found;
+        }
+
+        /** 
+         * Places the word number depth (in the order h1, v1, h2, v2, ...) and the ones after
+         * it, trying the candidates from a random starting word.
+         *
+         * @param depth the number of words already placed
+         * @param limit the number of puzzles after which the search stops (it also stops
+         *              after placing MAX_PLACED_PER_FIRST_WORD words for the first word)
+         * @param r     the random that chooses where the candidates start
+         */
+        private void search(int depth, int limit, SplittableRandom r) {
+            if (depth == size + 1) {
+                addPuzzle();
+                return;
+            }
+            long[] bitset = this.candidates[depth];
+            System.arraycopy(allWords, 0, bitset, 0, bitset.length);
+
+            //word number depth is h(depth / 2 + 1) if depth is even or v(depth / 2 + 1) if not
+            int word = depth / 2;
+            boolean horizontal = depth % 2 == 0;
+            for (int other = 0; other < (horizontal ? word : word + 1); other++) {
+                //the crossing word placed before: v(other + 1) for h words, h(other + 1) for v
+                String crossing = words[this.placed[horizontal ? 2 * other + 1 : 2 * other]];
+                long[] letterWords =
+                    index[2 * other * ALPHABET + crossing.charAt(2 * word) - 'A'];
+
+                for (int k = 0; k < bitset.length; k++) {
+                    bitset[k] &= letterWords[k];
+                }
+            }
+
+            int start = r.nextInt(words.length);
+            for (int n = 0; n < words.length && this.found.size() < limit &&
+                            this.nrPlaced < MAX_PLACED_PER_FIRST_WORD; n++) {
+                int w = nextSetBit(bitset, (start + n) % words.length);
+                if (w < 0) {
+                    n = words.length;
+                }
+                else {
+                    //skip to the candidate found, wrapping around the end of the bitset
+                    n += Math.floorMod(w - (start + n), words.length);
+                    if (n < words.length && !isPlaced(w, depth)) {
+                        this.placed[depth] = w;
+                        this.nrPlaced++;
+                        search(depth + 1, limit, r);
+                    }
+                }
+            }
+        }
+
+        /** 
+         * @param bitset the bitset
+         * @param from   the first bit to look at
+         * @return the first set bit from the given one, wrapping around to the start of the
+         *         bitset, or -1 if no bit is set
+         */
+        private int nextSetBit(long[] bitset, int from) {
+            int bit = -1;
+            for (int n = 0; n <= bitset.length && bit < 0; n++) {
+                int k = ((from >>> 6) + n) % bitset.length;
+                long bits = bitset[k];
+                if (n == 0) {
+                    bits &= -1L << from;
+                }
+                if (bits != 0) {
+                    bit = k * 64 + Long.numberOfTrailingZeros(bits);
+                }
+            }
+            return bit;
+        }
+
+        /** 
+         * @param w     the index of a word
+         * @param depth the number of words already placed
+         * @return true if the word is one of the words already placed or false if not
+         */
+        private boolean isPlaced(int w, int depth) {
+            boolean isPlaced = false;
+            for (int k = 0; k < depth && !isPlaced; k++) {
+                isPlaced = this.placed[k] == w;
+            }
+            return isPlaced;
+        }
+
+        /** 
+         * Adds the puzzle formed by the words placed to the puzzles found.
+         */
+        private void addPuzzle() {
+            String[] hWords = new String[(size + 1) / 2];
+            String[] vWords = new String[(size + 1) / 2];
+            for (int k = 0; k < hWords.length; k++) {
+                hWords[k] = words[this.placed[2 * k]];
+                vWords[k] = words[this.placed[2 * k + 1]];
+            }
+            this.found.add(new String[][] {hWords, vWords});
+        }
+    }
+}
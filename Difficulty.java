@@ -0,0 +1,3 @@
+public enum Difficulty {
+    EASY, MEDIUM, HARD
+}
@@ -0,0 +1,601 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+import java.util.stream.IntStream;
+
+/** 
+ * The objects of this class are immutable and rank the puzzles of one size and language by
+ * difficulty, splitting them in three tiers (Difficulty), so that a puzzle of a given
+ * difficulty is found with a lookup instead of trying puzzles until one fits.
+ *
+ * The difficulty of each puzzle is measured once, offline and on every available processor,
+ * on a number of seeded shuffles of its grid:
+ * - the letter duplication: the fraction of the letters of the grid that repeat a letter;
+ * - the greedy excess: the mean number of swaps, beyond the minimum (WaffleSolver), that a
+ *   player needs who always makes the swap that puts the most letters in their correct
+ *   positions (the shuffles all need shuffleSwaps() swaps, so the minimum alone does not
+ *   tell the puzzles apart, but how far the greens lead a player astray does);
+ * - the yellow clue ambiguity: the mean number of positions, in the words of a letter with a
+ *   yellow clue (WRONG_POS), where that letter is missing.
+ * The score of a puzzle is the mean of its percentiles in the three measures. The clues are
+ * computed on the grids, as WaffleGame gives them, without building a match.
+ *
+ * An index file has the following format (big-endian):
+ * - header: the magic "WDIX", the version (short) and the number of sections (short);
+ * - one 16 byte header per section: the size (byte), the language in two ASCII letters
+ *   (as in PuzzlePack), a padding byte, the number of puzzles (int) and the offset of the
+ *   section in the file (long);
+ * - each section: the number of EASY and of MEDIUM puzzles (ints) and then the ids of the
+ *   puzzles from the easiest to the hardest (ints) followed by their scores (floats).
+ */
+public class DifficultyIndex {
+
+    //The first bytes of every index file and the version of the format
+    private static final int MAGIC = 0x57444958;
+    private static final short VERSION = 1;
+
+    //The number of bytes of the file header and of each section header
+    private static final int HEADER_BYTES = 8;
+    private static final int SECTION_BYTES = 16;
+
+    //The number of seeded shuffles measured for each puzzle
+    public static final int SHUFFLES = 16;
+
+    //The number of characters of the words of the puzzles
+    private final int size;
+
+    //The language code (PuzzlePack.EN or PuzzlePack.PT) of the puzzles
+    private final String language;
+
+    //The ids of the puzzles from the easiest to the hardest, and their scores
+    private final int[] ids;
+    private final float[] scores;
+
+    //The position of each id in ids
+    private final int[] ranks;
+
+    //The index in ids after the last EASY puzzle and after the last MEDIUM puzzle
+    private final int easyEnd;
+    private final int mediumEnd;
+
+    /** 
+     * @param size      the number of characters of the words of the puzzles
+     * @param language  the language code of the puzzles
+     * @param ids       the ids of the puzzles from the easiest to the hardest
+     * @param scores    the scores of the puzzles, in the same order
+     * @param easyEnd   the number of EASY puzzles
+     * @param mediumEnd the number of EASY and MEDIUM puzzles
+     * @requires {@code ids is a permutation of 0 to ids.length - 1 &&
+     *            scores.length == ids.length && 0 <= easyEnd <= mediumEnd <= ids.length}
+     */
+    private DifficultyIndex(int size, String language, int[] ids, float[] scores,
+                            int easyEnd, int mediumEnd) {
+        this.size = size;
+        this.language = language;
+        this.ids = ids;
+        this.scores = scores;
+        this.easyEnd = easyEnd;
+        this.mediumEnd = mediumEnd;
+        this.ranks = new int[ids.length];
+        for (int k = 0; k < ids.length; k++) {
+            this.ranks[ids[k]] = k;
+        }
+    }
+
+    /** 
+     * Measures the given puzzles, using every available processor, and ranks them. A third
+     * of the puzzles (rounded up) is EASY, a third is HARD and the others are MEDIUM. The same
+     * puzzles and seed always give the same index.
+     *
+     * @param size     the number of characters of the words of the puzzles
+     * @param language the language code (PuzzlePack.EN or PuzzlePack.PT) of the puzzles
+     * @param puzzles  the puzzles, each one as {hWords, vWords}, the id of each one being its
+     *                 index in the list
+     * @param seed     the seed of the shuffles measured
+     * @return the index of the puzzles
+     * @requires {@code puzzles != null && every puzzle respects Puzzle.validWords and
+     *            Puzzle.overlappedWords for the given size}
+     */
+    public static DifficultyIndex build(int size, String language, List<String[][]> puzzles,
+                                        long seed) {
+        int nrPuzzles = puzzles.size();
+        double[][] measures = new double[3][nrPuzzles];
+
+        IntStream.range(0, nrPuzzles).parallel().forEach(id -> {
+            Puzzle puzzle = new Puzzle(size, puzzles.get(id)[0], puzzles.get(id)[1]);
+            double[] measure = measure(puzzle, seed + id);
+            for (int m = 0; m < measure.length; m++) {
+                measures[m][id] = measure[m];
+            }
+        });
+
+        double[] score = new double[nrPuzzles];
+        for (double[] measure : measures) {
+            double[] percentiles = percentiles(measure);
+            for (int id = 0; id < nrPuzzles; id++) {
+                score[id] += percentiles[id] / measures.length;
+            }
+        }
+
+        int[] ids = IntStream.range(0, nrPuzzles).boxed()
+                             .sorted(Comparator.<Integer>comparingDouble(id -> score[id])
+                                               .thenComparingInt(id -> id))
+                             .mapToInt(Integer::intValue).toArray();
+        float[] scores = new float[nrPuzzles];
+        for (int k = 0; k < nrPuzzles; k++) {
+            scores[k] = (float) score[ids[k]];
+        }
+        int third = (nrPuzzles + 1) / 3;
+        return new DifficultyIndex(size, language, ids, scores, third, nrPuzzles - third);
+    }
+
+    /** 
+     * Measures the difficulty of a puzzle on seeded shuffles of its grid.
+     *
+     * @param puzzle the puzzle
+     * @param seed   the seed of the shuffles
+     * @return {letter duplication, greedy excess, yellow clue ambiguity}
+     */
+    static double[] measure(Puzzle puzzle, long seed) {
+        int size = puzzle.size();
+        GridTopology topology = puzzle.topology();
+        char[][] puzzleGrid = puzzle.buildGrid();
+
+        int distinct = 0;
+        for (char letter = 'A'; letter <= 'Z'; letter++) {
+            if (puzzle.letterCount(letter) > 0) {
+                distinct++;
+            }
+        }
+        double duplication = 1 - (double) distinct / topology.nrLetters();
+
+        SplittableRandom r = new SplittableRandom(seed);
+        char[][] grid = new char[size][size];
+        boolean[][] wrongPos = new boolean[size][size];
+        long excess = 0;
+        long yellows = 0;
+        long destinations = 0;
+        for (int s = 0; s < SHUFFLES; s++) {
+            puzzle.getShuffledGrid(r, grid);
+            excess -= new WaffleSolver(puzzle, grid).minSwaps();
+
+            wrongPositions(puzzleGrid, grid, topology, wrongPos);
+            for (int k = 0; k < topology.nrLetters(); k++) {
+                int i = topology.letterCell(k) / size;
+                int j = topology.letterCell(k) % size;
+                if (wrongPos[i][j]) {
+                    yellows++;
+                    destinations += missingPositions(puzzleGrid, grid, topology, i, j);
+                }
+            }
+            excess += greedySwaps(puzzleGrid, grid, topology, r);
+        }
+        double ambiguity = yellows == 0 ? 0 : (double) destinations / yellows;
+        return new double[] {duplication, (double) excess / SHUFFLES, ambiguity};
+    }
+
+    /** 
+     * Marks the positions of a grid whose clue is WRONG_POS, as WaffleGame gives them: a
+     * letter out of its correct position is in the wrong position if its row or column word
+     * misses that letter, the letters being matched from left to right and from top to
+     * bottom.
+     *
+     * @param puzzleGrid the grid of the puzzle
+     * @param grid       a grid of the puzzle
+     * @param topology   the classification of the positions of the grids
+     * @param wrongPos   the matrix where each position is marked (true if WRONG_POS)
+     * @requires {@code wrongPos is a square matrix with grid.length rows}
+     */
+    static void wrongPositions(char[][] puzzleGrid, char[][] grid, GridTopology topology,
+                               boolean[][] wrongPos) {
+        int size = grid.length;
+        int[] missingInRow = new int[26];
+        int[] missingInCol = new int[26];
+        for (boolean[] row : wrongPos) {
+            Arrays.fill(row, false);
+        }
+
+        for (int w = 0; w < topology.nrWords(); w++) {
+            int line = topology.line(w);
+            for (int k = 0; k < size; k++) {
+                if (grid[line][k] != puzzleGrid[line][k]) {
+                    missingInRow[puzzleGrid[line][k] - 'A']++;
+                }
+                if (grid[k][line] != puzzleGrid[k][line]) {
+                    missingInCol[puzzleGrid[k][line] - 'A']++;
+                }
+            }
+            for (int k = 0; k < size; k++) {
+                if (grid[line][k] != puzzleGrid[line][k] &&
+                    missingInRow[grid[line][k] - 'A'] > 0) {
+
+                    missingInRow[grid[line][k] - 'A']--;
+                    wrongPos[line][k] = true;
+                }
+                if (grid[k][line] != puzzleGrid[k][line] &&
+                    missingInCol[grid[k][line] - 'A'] > 0) {
+
+                    missingInCol[grid[k][line] - 'A']--;
+                    wrongPos[k][line] = true;
+                }
+            }
+            Arrays.fill(missingInRow, 0);
+            Arrays.fill(missingInCol, 0);
+        }
+    }
+
+    /** 
+     * Solves a grid as a player who always makes the swap that puts the most letters in
+     * their correct positions, choosing at random among the best ones (as
+     * GameSimulator.GREEDY).
+     *
+     * @param puzzleGrid the grid of the puzzle
+     * @param grid       a grid of the puzzle, which ends solved
+     * @param topology   the classification of the positions of the grids
+     * @param r          the generator of the random choices
+     * @return the number of swaps made
+     */
+    private static int greedySwaps(char[][] puzzleGrid, char[][] grid, GridTopology topology,
+                                   SplittableRandom r) {
+        int size = grid.length;
+        int swaps = 0;
+        int best = 1;
+
+        //every misplaced letter is needed in another misplaced position, so a swap puts at
+        //least one letter in its correct position
+        while (best > 0) {
+            best = 0;
+            int ties = 0;
+            int cell1 = -1;
+            int cell2 = -1;
+            for (int k1 = 0; k1 < topology.nrLetters(); k1++) {
+                int c1 = topology.letterCell(k1);
+                char letter1 = grid[c1 / size][c1 % size];
+                if (letter1 != puzzleGrid[c1 / size][c1 % size]) {
+                    for (int k2 = k1 + 1; k2 < topology.nrLetters(); k2++) {
+                        int c2 = topology.letterCell(k2);
+                        char letter2 = grid[c2 / size][c2 % size];
+                        if (letter2 != puzzleGrid[c2 / size][c2 % size] && letter1 != letter2) {
+                            int greens = (letter1 == puzzleGrid[c2 / size][c2 % size] ? 1 : 0) +
+                                         (letter2 == puzzleGrid[c1 / size][c1 % size] ? 1 : 0);
+                            if (greens > best) {
+                                best = greens;
+                                ties = 0;
+                            }
+                            //reservoir sampling among the swaps with the most greens
+                            if (greens == best && r.nextInt(++ties) == 0) {
+                                cell1 = c1;
+                                cell2 = c2;
+                            }
+                        }
+                    }
+                }
+            }
+            if (best > 0) {
+                char letter = grid[cell1 / size][cell1 % size];
+                grid[cell1 / size][cell1 % size] = grid[cell2 / size][cell2 % size];
+                grid[cell2 / size][cell2 % size] = letter;
+                swaps++;
+            }
+        }
+        return swaps;
+    }
+
+    /** 
+     * Reads the section of an index file with the puzzles of the given size and language.
+     *
+     * @param file      the index file
+     * @param size      the number of characters of the words of the puzzles
+     * @param inEnglish if the puzzles are in english (or in portuguese)
+     * @return the index of the section
+     * @throws IOException if the file cannot be read, is not a valid index file or does not
+     *                     have puzzles of the given size and language
+     */
+    public static DifficultyIndex read(Path file, int size, boolean inEnglish)
+            throws IOException {
+
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.BIG_ENDIAN);
+        if (buffer.limit() < HEADER_BYTES || buffer.getInt(0) != MAGIC ||
+            buffer.getShort(4) != VERSION) {
+
+            throw new IOException("not a difficulty index: " + file);
+        }
+
+        String language = inEnglish ? PuzzlePack.EN : PuzzlePack.PT;
+        int sections = buffer.getShort(6);
+        long tableEnd = HEADER_BYTES + (long) sections * SECTION_BYTES;
+        if (sections < 0 || tableEnd > buffer.limit()) {
+            throw new IOException("corrupted section table in difficulty index: " + file);
+        }
+        int section = -1;
+        for (int s = 0; s < sections && section < 0; s++) {
+            int at = HEADER_BYTES + s * SECTION_BYTES;
+            if (buffer.get(at) == size && buffer.get(at + 1) == language.charAt(0) &&
+                buffer.get(at + 2) == language.charAt(1)) {
+
+                section = at;
+            }
+        }
+        if (section < 0) {
+            throw new IOException("no puzzles of size " + size + " in " + language + ": " + file);
+        }
+
+        int nrPuzzles = buffer.getInt(section + 4);
+        long offset = buffer.getLong(section + 8);
+        //the section is after the section table and within the file
+        if (nrPuzzles < 0 || offset < tableEnd) {
+            throw new IOException("corrupted section header in difficulty index: " + file);
+        }
+        if (offset > buffer.limit() - 8 - 8L * nrPuzzles) {
+            throw new IOException("truncated difficulty index: " + file);
+        }
+        buffer.position((int) offset);
+        int easyEnd = buffer.getInt();
+        int mediumEnd = buffer.getInt();
+        int[] ids = new int[nrPuzzles];
+        float[] scores = new float[nrPuzzles];
+        buffer.asIntBuffer().get(ids);
+        buffer.position((int) offset + 8 + 4 * nrPuzzles);
+        buffer.asFloatBuffer().get(scores);
+
+        //the tiers split the puzzles and every puzzle is ranked once
+        boolean[] ranked = new boolean[nrPuzzles];
+        boolean valid = 0 <= easyEnd && easyEnd <= mediumEnd && mediumEnd <= nrPuzzles;
+        for (int k = 0; k < nrPuzzles && valid; k++) {
+            valid = 0 <= ids[k] && ids[k] < nrPuzzles && !ranked[ids[k]];
+            if (valid) {
+                ranked[ids[k]] = true;
+            }
+        }
+        if (!valid) {
+            throw new IOException("corrupted section in difficulty index: " + file);
+        }
+        return new DifficultyIndex(size, language, ids, scores, easyEnd, mediumEnd);
+    }
+
+    /** 
+     * Writes an index file with the given indexes, each one in its own section.
+     *
+     * @param file    the index file
+     * @param indexes the indexes
+     * @throws IOException if the file cannot be written
+     * @requires {@code indexes != null && no two indexes have the same size and language}
+     */
+    public static void write(Path file, List<DifficultyIndex> indexes) throws IOException {
+        int length = HEADER_BYTES + indexes.size() * SECTION_BYTES;
+        for (DifficultyIndex index : indexes) {
+            length += 8 + 8 * index.nrPuzzles();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.BIG_ENDIAN);
+        buffer.putInt(MAGIC).putShort(VERSION).putShort((short) indexes.size());
+
+        long offset = HEADER_BYTES + indexes.size() * SECTION_BYTES;
+        for (DifficultyIndex index : indexes) {
+            buffer.put((byte) index.size)
+                  .put((byte) index.language.charAt(0)).put((byte) index.language.charAt(1))
+                  .put((byte) 0)
+                  .putInt(index.nrPuzzles())
+                  .putLong(offset);
+            offset += 8 + 8 * index.nrPuzzles();
+        }
+        for (DifficultyIndex index : indexes) {
+            buffer.putInt(index.easyEnd).putInt(index.mediumEnd);
+            for (int id : index.ids) {
+                buffer.putInt(id);
+            }
+            for (float score : index.scores) {
+                buffer.putFloat(score);
+            }
+        }
+        buffer.flip();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                                                    StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /** 
+     * @return the number of characters of the words of the puzzles
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /** 
+     * @return the language code (PuzzlePack.EN or PuzzlePack.PT) of the puzzles
+     */
+    public String language() {
+        return this.language;
+    }
+
+    /** 
+     * @return the number of puzzles of the index
+     */
+    public int nrPuzzles() {
+        return this.ids.length;
+    }
+
+    /** 
+     * @param difficulty the difficulty
+     * @return the number of puzzles of the given difficulty
+     */
+    public int nrPuzzles(Difficulty difficulty) {
+        return tierEnd(difficulty) - tierStart(difficulty);
+    }
+
+    /** 
+     * @param difficulty the difficulty
+     * @param k          the position of the puzzle among the ones of the given difficulty,
+     *                   from the easiest to the hardest
+     * @return the id of the puzzle
+     * @requires {@code 0 <= k && k < nrPuzzles(difficulty)}
+     */
+    public int puzzle(Difficulty difficulty, int k) {
+        return this.ids[tierStart(difficulty) + k];
+    }
+
+    /** 
+     * @param difficulty the difficulty
+     * @param r          the generator of the random choice
+     * @return the id of a random puzzle of the given difficulty
+     * @requires {@code r != null && nrPuzzles(difficulty) > 0}
+     */
+    public int randomPuzzle(Difficulty difficulty, RandomGenerator r) {
+        return puzzle(difficulty, r.nextInt(nrPuzzles(difficulty)));
+    }
+
+    /** 
+     * @param id the id of the puzzle
+     * @return the difficulty of the puzzle
+     * @requires {@code 0 <= id && id < nrPuzzles()}
+     */
+    public Difficulty difficulty(int id) {
+        int rank = this.ranks[id];
+        return rank < this.easyEnd ? Difficulty.EASY :
+               rank < this.mediumEnd ? Difficulty.MEDIUM : Difficulty.HARD;
+    }
+
+    /** 
+     * @param id the id of the puzzle
+     * @return the score of the puzzle, between 0 (the easiest) and 1 (the hardest)
+     * @requires {@code 0 <= id && id < nrPuzzles()}
+     */
+    public float score(int id) {
+        return this.scores[this.ranks[id]];
+    }
+
+    /** 
+     * Builds the index of every puzzle of the PuzzleGenerator (sizes 5 and 7, in english and
+     * in portuguese), writes it and prints how long the indexing and the lookup of a hard
+     * puzzle take.
+     *
+     * @param args the name of the index file
+     * @throws IOException if the file cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        Path file = Paths.get(args[0]);
+        int[] sizes = new int[] {5, 7, 5, 7};
+        String[] languages = new String[] {PuzzlePack.EN, PuzzlePack.EN, PuzzlePack.PT,
+                                           PuzzlePack.PT};
+        List<DifficultyIndex> indexes = new ArrayList<>();
+
+        for (int s = 0; s < sizes.length; s++) {
+            PuzzleGenerator generator = new PuzzleGenerator(sizes[s],
+                                                            languages[s].equals(PuzzlePack.EN));
+            List<String[][]> puzzles = new ArrayList<>();
+            for (int id = 0; id < generator.nrPuzzles(); id++) {
+                puzzles.add(new String[][] {generator.getHorizontalWords(id),
+                                            generator.getVerticalWords(id)});
+            }
+            long start = System.nanoTime();
+            indexes.add(build(sizes[s], languages[s], puzzles, 313));
+            System.out.printf("size %d %s: %d puzzles indexed in %.1f ms on %d processors%n",
+                              sizes[s], languages[s], puzzles.size(),
+                              (System.nanoTime() - start) / 1e6,
+                              Runtime.getRuntime().availableProcessors());
+        }
+        write(file, indexes);
+
+        SplittableRandom r = new SplittableRandom();
+        for (int s = 0; s < sizes.length; s++) {
+            DifficultyIndex index = read(file, sizes[s], languages[s].equals(PuzzlePack.EN));
+            int lookups = 1_000_000;
+            long checksum = 0;
+            long start = System.nanoTime();
+            for (int k = 0; k < lookups && index.nrPuzzles(Difficulty.HARD) > 0; k++) {
+                checksum += index.randomPuzzle(Difficulty.HARD, r);
+            }
+            System.out.printf("size %d %s: %d easy, %d medium, %d hard, %.1f ns per hard " +
+                              "puzzle lookup (%d)%n", sizes[s], languages[s],
+                              index.nrPuzzles(Difficulty.EASY), index.nrPuzzles(Difficulty.MEDIUM),
+                              index.nrPuzzles(Difficulty.HARD),
+                              (System.nanoTime() - start) / (double) lookups, checksum);
+        }
+    }
+
+    /** 
+     * @param puzzleGrid the grid of the puzzle
+     * @param grid       a grid of the puzzle
+     * @param topology   the classification of the positions of the grids
+     * @param i          the index of the row of a misplaced letter
+     * @param j          the index of the column of the letter
+     * @return the number of positions of the words of the letter where it is missing
+     */
+    private static int missingPositions(char[][] puzzleGrid, char[][] grid,
+                                        GridTopology topology, int i, int j) {
+        int missing = 0;
+        char letter = grid[i][j];
+        for (int k = 0; k < grid.length; k++) {
+            if (topology.rowWord(i, j) >= 0 && puzzleGrid[i][k] == letter &&
+                grid[i][k] != letter) {
+
+                missing++;
+            }
+            if (topology.colWord(i, j) >= 0 && puzzleGrid[k][j] == letter &&
+                grid[k][j] != letter) {
+
+                missing++;
+            }
+        }
+        return missing;
+    }
+
+    /** 
+     * @param values the values
+     * @return the percentile of each value among the given ones, between 0 and 1 (equal
+     *         values get the mean of their positions)
+     */
+    private static double[] percentiles(double[] values) {
+        int[] order = IntStream.range(0, values.length).boxed()
+                               .sorted(Comparator.comparingDouble(k -> values[k]))
+                               .mapToInt(Integer::intValue).toArray();
+        double[] percentiles = new double[values.length];
+        int from = 0;
+        while (from < order.length) {
+            int to = from;
+            while (to < order.length && values[order[to]] == values[order[from]]) {
+                to++;
+            }
+            //the positions from to to - 1 have the same value
+            double percentile = order.length > 1 ? (from + to - 1) / 2.0 / (order.length - 1) : 0;
+            for (int k = from; k < to; k++) {
+                percentiles[order[k]] = percentile;
+            }
+            from = to;
+        }
+        return percentiles;
+    }
+
+    /** 
+     * @param difficulty the difficulty
+     * @return the index in ids of the first puzzle of the given difficulty
+     */
+    private int tierStart(Difficulty difficulty) {
+        return difficulty == Difficulty.EASY ? 0 :
+               difficulty == Difficulty.MEDIUM ? this.easyEnd : this.mediumEnd;
+    }
+
+    /** 
+     * @param difficulty the difficulty
+     * @return the index in ids after the last puzzle of the given difficulty
+     */
+    private int tierEnd(Difficulty difficulty) {
+        return difficulty == Difficulty.EASY ? this.easyEnd :
+               difficulty == Difficulty.MEDIUM ? this.mediumEnd : this.ids.length;
+    }
+}
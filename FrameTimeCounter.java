@@ -0,0 +1,78 @@
+/**
+ * The objects of this class count the time the GUI takes to bring the board up to date after
+ * each swap, from the swap to the end of the pulse that repaints the positions changed, so
+ * the cost of repainting can be followed on large boards and slow machines.
+ *
+ * The times are kept in a LatencyHistogram, so recording a frame does not allocate nor lock
+ * and a percentile is at most 6.25% above the time (about 1 ms for a 16 ms frame). The
+ * controller records from the JavaFX thread and the statistics can be read from any thread.
+ */
+public class FrameTimeCounter {
+
+    //The times of the frames
+    private final LatencyHistogram frameTimes = new LatencyHistogram();
+
+    /**
+     * Records the time of a frame.
+     *
+     * @param nanos the time of the frame, in nanoseconds
+     * @requires {@code nanos >= 0}
+     */
+    public void record(long nanos) {
+        this.frameTimes.record(nanos);
+    }
+
+    /**
+     * Records the time of a frame that started at the given instant and ends now.
+     *
+     * @param startNanos the instant the frame started, as given by System.nanoTime()
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * @return the number of frames recorded
+     */
+    public long frames() {
+        return this.frameTimes.count();
+    }
+
+    /**
+     * @return the mean time of the frames recorded, in milliseconds (0 if there are none)
+     */
+    public double meanMillis() {
+        return this.frameTimes.meanNanos() / 1e6;
+    }
+
+    /**
+     * @return the longest time of a frame recorded, in milliseconds
+     */
+    public double maxMillis() {
+        return this.frameTimes.maxNanos() / 1e6;
+    }
+
+    /**
+     * @param percentile the percentage of the frames, between 0 and 100
+     * @return the time, in milliseconds, within which that percentage of the frames ended
+     *         (rounded up to the end of its bucket, but never past the longest time)
+     */
+    public double percentileMillis(double percentile) {
+        return this.frameTimes.percentileNanos(percentile) / 1e6;
+    }
+
+    /**
+     * Forgets every frame recorded.
+     */
+    public void reset() {
+        this.frameTimes.reset();
+    }
+
+    /**
+     * @return the number of frames and their mean, 99th percentile and longest times
+     */
+    public String toString() {
+        return String.format("%d frames, mean %.2f ms, p99 %.2f ms, max %.2f ms", frames(),
+                             meanMillis(), percentileMillis(99), maxMillis());
+    }
+}
@@ -0,0 +1,111 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The JDK Flight Recorder events of the game, so a recording shows which operations of the
+ * game were running when the time went elsewhere.
+ *
+ * Every event is disabled by default and has no stack trace: they are only recorded when a
+ * recording enables them, for example with
+ * {@code java -XX:StartFlightRecording:+waffle.Swap#enabled=true,filename=waffle.jfr ...}
+ * or {@code jcmd <pid> JFR.start +waffle.Swap#enabled=true}, and then
+ * {@code jfr print --events waffle.Swap waffle.jfr} lists them. They are used as
+ * {@code begin(); ...; if (shouldCommit()) {set the fields; commit();}}, so a disabled event
+ * costs an allocation the JIT removes and a check of a flag. The duration of each event is
+ * the one JFR keeps for every event; the puzzle is identified by Puzzle.fingerprint().
+ */
+public final class GameEvents {
+
+    /**
+     * A swap of two letters of a match by a player (WaffleGame.swap).
+     */
+    @Name("waffle.Swap")
+    @Label("Swap")
+    @Category("Waffle Game")
+    @Description("A swap of two letters of a match, with the update of the clues")
+    @Enabled(false)
+    @StackTrace(false)
+    public static final class Swap extends Event {
+
+        @Label("Size")
+        int size;
+
+        @Label("Puzzle Id")
+        long puzzleId;
+
+        @Label("Remaining Swaps")
+        int remainingSwaps;
+    }
+
+    /**
+     * The evaluation of the clues of every position of a grid at once: their calculation
+     * when a match starts or is restarted and their reading in a batch (WaffleGame.clueAll).
+     */
+    @Name("waffle.ClueEvaluation")
+    @Label("Clue Evaluation")
+    @Category("Waffle Game")
+    @Description("The evaluation of the clues of every position of a grid")
+    @Enabled(false)
+    @StackTrace(false)
+    public static final class ClueEvaluation extends Event {
+
+        @Label("Size")
+        int size;
+
+        @Label("Puzzle Id")
+        long puzzleId;
+    }
+
+    /**
+     * The shuffle of a grid of a puzzle (Puzzle.getShuffledGrid).
+     */
+    @Name("waffle.Shuffle")
+    @Label("Shuffle")
+    @Category("Waffle Game")
+    @Description("The shuffle of a grid of a puzzle")
+    @Enabled(false)
+    @StackTrace(false)
+    public static final class Shuffle extends Event {
+
+        @Label("Size")
+        int size;
+
+        @Label("Puzzle Id")
+        long puzzleId;
+
+        @Label("Swaps")
+        int swaps;
+    }
+
+    /**
+     * The opening of the section of a puzzle pack with the puzzles of a size and language.
+     */
+    @Name("waffle.PackLoad")
+    @Label("Puzzle Pack Load")
+    @Category("Waffle Game")
+    @Description("The opening of a section of a puzzle pack")
+    @Enabled(false)
+    @StackTrace(false)
+    public static final class PackLoad extends Event {
+
+        @Label("Size")
+        int size;
+
+        @Label("Language")
+        String language;
+
+        @Label("Puzzles")
+        int puzzles;
+    }
+
+    /**
+     * There are no objects of this class, only of its events.
+     */
+    private GameEvents() {
+    }
+}
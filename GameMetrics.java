@@ -0,0 +1,240 @@
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * The measures of how the game behaves, shared by every match of the JVM: the matches
+ * started, won and lost, the swaps made, the remaining swaps at the end of the matches and
+ * the times of updating the clues, shuffling grids and generating puzzles.
+ *
+ * WaffleGame, WaffleServer, Puzzle and DictionaryPuzzleGenerator record into get() as they
+ * go; the counters are LongAdders and the times LatencyHistograms, so recording costs a few
+ * nanoseconds and never locks. register() publishes the measures as an MBean named NAME,
+ * which JConsole shows when attached to the JVM; WaffleServer registers it on start.
+ */
+public class GameMetrics implements GameMetricsMBean {
+
+    //The name of the MBean
+    public static final String NAME = "WaffleGame:type=GameMetrics";
+
+    //One in SAMPLING swaps has the time of its clue updates measured
+    public static final int SAMPLING = 64;
+
+    //The number of positions of the distribution of the remaining swaps at the end
+    private static final int MAX_REMAINING = 128;
+
+    //The measures of the JVM
+    private static final GameMetrics METRICS = new GameMetrics();
+
+    //The number of matches started, won and lost and of swaps made
+    private final LongAdder gamesStarted;
+    private final LongAdder gamesWon;
+    private final LongAdder gamesLost;
+    private final LongAdder swaps;
+
+    //The number of matches that ended with each number of swaps left
+    private final LongAdder[] remainingAtEnd;
+
+    //The times of updating the clues, shuffling grids and generating puzzles
+    private final LatencyHistogram clueUpdates;
+    private final LatencyHistogram shuffles;
+    private final LatencyHistogram generations;
+
+    //The number of swaps and the instant of the last time the swaps per second were read
+    private long lastSwaps;
+    private long lastNanos;
+
+    /**
+     * @return the measures of the JVM
+     */
+    public static GameMetrics get() {
+        return METRICS;
+    }
+
+    /**
+     * Publishes the measures of the JVM as an MBean of the platform MBean server, if they
+     * are not published yet.
+     *
+     * @return true if the measures were published now or false if they already were
+     */
+    public static boolean register() {
+        boolean registered = true;
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(METRICS,
+                                                                     new ObjectName(NAME));
+        } catch (InstanceAlreadyExistsException e) {
+            registered = false;
+        } catch (JMException e) {
+            throw new IllegalStateException("cannot register " + NAME, e);
+        }
+        return registered;
+    }
+
+    /**
+     * Builds the measures, all empty.
+     */
+    private GameMetrics() {
+        this.gamesStarted = new LongAdder();
+        this.gamesWon = new LongAdder();
+        this.gamesLost = new LongAdder();
+        this.swaps = new LongAdder();
+        this.remainingAtEnd = new LongAdder[MAX_REMAINING];
+        for (int k = 0; k < MAX_REMAINING; k++) {
+            this.remainingAtEnd[k] = new LongAdder();
+        }
+        this.clueUpdates = new LatencyHistogram();
+        this.shuffles = new LatencyHistogram();
+        this.generations = new LatencyHistogram();
+        this.lastNanos = System.nanoTime();
+    }
+
+    /**
+     * Counts a match started by a player: a NEW of WaffleServer or a match of GameSimulator
+     * (WaffleGame.newMatch), not the matches built only to be measured or recovered.
+     */
+    public void recordGameStarted() {
+        this.gamesStarted.increment();
+    }
+
+    /**
+     * Counts a match that ended.
+     *
+     * @param won            true if the puzzle was found or false if there were no swaps left
+     * @param remainingSwaps the number of swaps left
+     * @requires {@code remainingSwaps >= 0}
+     */
+    public void recordGameEnded(boolean won, int remainingSwaps) {
+        (won ? this.gamesWon : this.gamesLost).increment();
+        this.remainingAtEnd[Math.min(remainingSwaps, MAX_REMAINING - 1)].increment();
+    }
+
+    /**
+     * Counts a swap made by a player.
+     */
+    public void recordSwap() {
+        this.swaps.increment();
+    }
+
+    /**
+     * @param nanos the time of updating the clues after a swap, in nanoseconds
+     */
+    public void recordClueUpdate(long nanos) {
+        this.clueUpdates.record(nanos);
+    }
+
+    /**
+     * @param nanos the time of shuffling a grid, in nanoseconds
+     */
+    public void recordShuffle(long nanos) {
+        this.shuffles.record(nanos);
+    }
+
+    /**
+     * @param nanos the time of generating a set of puzzles (DictionaryPuzzleGenerator), in nanoseconds
+     */
+    public void recordGeneration(long nanos) {
+        this.generations.record(nanos);
+    }
+
+    @Override
+    public long getGamesStarted() {
+        return this.gamesStarted.sum();
+    }
+
+    @Override
+    public long getGamesWon() {
+        return this.gamesWon.sum();
+    }
+
+    @Override
+    public long getGamesLost() {
+        return this.gamesLost.sum();
+    }
+
+    @Override
+    public long getSwaps() {
+        return this.swaps.sum();
+    }
+
+    @Override
+    public synchronized double getSwapsPerSecond() {
+        long swaps = this.swaps.sum();
+        long now = System.nanoTime();
+        double perSecond = now == this.lastNanos ? 0 :
+                           (swaps - this.lastSwaps) * 1e9 / (now - this.lastNanos);
+        this.lastSwaps = swaps;
+        this.lastNanos = now;
+        return perSecond;
+    }
+
+    @Override
+    public double getClueUpdateMeanNanos() {
+        return this.clueUpdates.meanNanos();
+    }
+
+    @Override
+    public long getClueUpdateP99Nanos() {
+        return this.clueUpdates.percentileNanos(99);
+    }
+
+    @Override
+    public long getClueUpdateMaxNanos() {
+        return this.clueUpdates.maxNanos();
+    }
+
+    @Override
+    public double getShuffleMeanNanos() {
+        return this.shuffles.meanNanos();
+    }
+
+    @Override
+    public long getShuffleP99Nanos() {
+        return this.shuffles.percentileNanos(99);
+    }
+
+    @Override
+    public long getShuffleMaxNanos() {
+        return this.shuffles.maxNanos();
+    }
+
+    @Override
+    public double getGenerationMeanNanos() {
+        return this.generations.meanNanos();
+    }
+
+    @Override
+    public long getGenerationMaxNanos() {
+        return this.generations.maxNanos();
+    }
+
+    @Override
+    public long[] getRemainingSwapsAtEnd() {
+        int length = MAX_REMAINING;
+        while (length > 0 && this.remainingAtEnd[length - 1].sum() == 0) {
+            length--;
+        }
+        long[] counts = new long[length];
+        for (int k = 0; k < length; k++) {
+            counts[k] = this.remainingAtEnd[k].sum();
+        }
+        return counts;
+    }
+
+    @Override
+    public synchronized void reset() {
+        this.gamesStarted.reset();
+        this.gamesWon.reset();
+        this.gamesLost.reset();
+        this.swaps.reset();
+        for (LongAdder count : this.remainingAtEnd) {
+            count.reset();
+        }
+        this.clueUpdates.reset();
+        this.shuffles.reset();
+        this.generations.reset();
+        this.lastSwaps = 0;
+        this.lastNanos = System.nanoTime();
+    }
+}
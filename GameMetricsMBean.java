@@ -0,0 +1,84 @@
+/**
+ * The measures of the game that GameMetrics publishes through JMX, as read by JConsole: the
+ * counters are totals since the start (or the last reset) and the times are in nanoseconds.
+ */
+public interface GameMetricsMBean {
+
+    /**
+     * @return the number of matches started by the players (WaffleServer NEW and simulated
+     *         matches), without the ones recovered
+     */
+    long getGamesStarted();
+
+    /**
+     * @return the number of matches that ended with the puzzle found
+     */
+    long getGamesWon();
+
+    /**
+     * @return the number of matches that ended with no swaps left
+     */
+    long getGamesLost();
+
+    /**
+     * @return the number of swaps made by the players
+     */
+    long getSwaps();
+
+    /**
+     * @return the number of swaps made per second since the last time this was read
+     */
+    double getSwapsPerSecond();
+
+    /**
+     * @return the mean time of updating the clues after a swap (one in GameMetrics.SAMPLING
+     *         swaps is measured)
+     */
+    double getClueUpdateMeanNanos();
+
+    /**
+     * @return the 99th percentile of the time of updating the clues after a swap
+     */
+    long getClueUpdateP99Nanos();
+
+    /**
+     * @return the longest time of updating the clues after a swap
+     */
+    long getClueUpdateMaxNanos();
+
+    /**
+     * @return the mean time of shuffling a grid
+     */
+    double getShuffleMeanNanos();
+
+    /**
+     * @return the 99th percentile of the time of shuffling a grid
+     */
+    long getShuffleP99Nanos();
+
+    /**
+     * @return the longest time of shuffling a grid
+     */
+    long getShuffleMaxNanos();
+
+    /**
+     * @return the mean time of generating a set of puzzles
+     */
+    double getGenerationMeanNanos();
+
+    /**
+     * @return the longest time of generating a set of puzzles
+     */
+    long getGenerationMaxNanos();
+
+    /**
+     * @return the number of matches that ended with each number of swaps left (the last
+     *         position has the matches that ended with that many or more)
+     */
+    long[] getRemainingSwapsAtEnd();
+
+    /**
+     * Forgets every measure.
+     */
+    void reset();
+}
@@ -0,0 +1,473 @@
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Plays many matches of the Waffle Game without a player, in every core, to measure how a
+ * strategy does with the rules of the game: how many matches it wins and how many swaps it
+ * uses. It is meant to tune maxSwaps(), shuffleSwaps() and the clues with data.
+ *
+ * Each match gets a random puzzle of the simulator, shuffled with the given number of swaps,
+ * and is played by a strategy until it is over: until it is won or it used the swap budget
+ * of the simulator, which is counted as lost. The random choices of a match only depend on
+ * the seed of the simulation and on the number of the match, so a simulation gives the same
+ * results whatever the number of cores. The matches are split in ranges among the threads
+ * of the common ForkJoinPool, and each range reuses one WaffleGame for each puzzle
+ * (WaffleGame.newMatch), so a match allocates little more than its shuffle.
+ */
+public class GameSimulator {
+
+    //The number of matches a task plays without splitting them
+    private static final int MATCHES_PER_TASK = 4096;
+
+    /*An odd constant that spreads the seeds of consecutive matches, other than the one
+      SplittableRandom adds to its seed for each number, so their numbers do not overlap*/
+    private static final long SEED_GAMMA = 0xBF58476D1CE4E5B9L;
+
+    /**
+     * A way of playing a match: choosing the next swap from the state of the match.
+     */
+    @FunctionalInterface
+    public interface Strategy {
+
+        /**
+         * Chooses the next swap of a match.
+         *
+         * @param game     the match
+         * @param solution the grid of the puzzle of the match, solved
+         * @param r        the generator of the random choices of the match
+         * @param swap     the array where the swap is written, as {row1, col1, row2, col2}
+         * @requires {@code !game.isOver() && swap.length >= 4}
+         * @ensures {@code the swap is of two swappable positions with different letters}
+         */
+        void nextSwap(WaffleGame game, char[][] solution, SplittableRandom r, int[] swap);
+    }
+
+    //Swaps two random positions that are not in their correct positions
+    public static final Strategy RANDOM = GameSimulator::randomSwap;
+
+    //Makes the swap that most positions would show in green after it
+    public static final Strategy GREEDY = GameSimulator::greedySwap;
+
+    //Makes the next swap of a solution with the fewest swaps (see WaffleSolver)
+    public static final Strategy OPTIMAL = (game, solution, r, swap) -> {
+        int[] hint = game.hint();
+        System.arraycopy(hint, 0, swap, 0, 4);
+    };
+
+    //The puzzles of the matches, all of the same size
+    private final Puzzle[] puzzles;
+
+    //The number of swaps of the shuffles of the matches
+    private final int shuffleSwaps;
+
+    //The number of swaps a match can use (its maxSwaps())
+    private final int swapBudget;
+
+    /**
+     * Builds a simulator of matches with the given puzzles, shuffled with the given number
+     * of swaps, that allows the swaps of a match of the puzzles (WaffleGame.maxSwaps()).
+     *
+     * @param puzzles      the puzzles of the matches
+     * @param shuffleSwaps the minimum number of swaps that solve the shuffled grids
+     * @requires {@code puzzles.length > 0 && the puzzles have the same size &&
+     *            shuffleSwaps >= 1}
+     */
+    public GameSimulator(Puzzle[] puzzles, int shuffleSwaps) {
+        this(puzzles, shuffleSwaps, WaffleGame.defaultMaxSwaps(puzzles[0]));
+    }
+
+    /**
+     * Builds a simulator of matches with the given puzzles, shuffled with the given number
+     * of swaps, that stops a match after the given number of swaps.
+     *
+     * @param puzzles      the puzzles of the matches
+     * @param shuffleSwaps the minimum number of swaps that solve the shuffled grids
+     * @param swapBudget   the number of swaps a match can use
+     * @requires {@code puzzles.length > 0 && the puzzles have the same size &&
+     *            shuffleSwaps >= 1 && swapBudget >= 1}
+     */
+    public GameSimulator(Puzzle[] puzzles, int shuffleSwaps, int swapBudget) {
+        this.puzzles = puzzles.clone();
+        this.shuffleSwaps = shuffleSwaps;
+        this.swapBudget = swapBudget;
+    }
+
+    /**
+     * @return the number of swaps a match can use
+     */
+    public int swapBudget() {
+        return this.swapBudget;
+    }
+
+    /**
+     * Plays the given number of matches with a strategy, in every core.
+     *
+     * @param strategy the strategy
+     * @param matches  the number of matches
+     * @param seed     the seed of the random choices of the matches
+     * @return the results of the matches
+     * @requires {@code strategy != null && matches >= 0}
+     */
+    public Results simulate(Strategy strategy, long matches, long seed) {
+        return ForkJoinPool.commonPool().invoke(new SimulationTask(strategy, 0, matches, seed));
+    }
+
+    /**
+     * Plays the matches with the numbers in a range, in the current thread.
+     *
+     * @param strategy the strategy
+     * @param from     the number of the first match
+     * @param to       the number after the last match
+     * @param seed     the seed of the random choices of the matches
+     * @return the results of the matches
+     */
+    private Results play(Strategy strategy, long from, long to, long seed) {
+        Results results = new Results();
+        WaffleGame[] games = new WaffleGame[this.puzzles.length];
+        char[][][] solutions = new char[this.puzzles.length][][];
+        char[][] shuffled = new char[this.puzzles[0].size()][this.puzzles[0].size()];
+        int[] swap = new int[4];
+
+        for (long match = from; match < to; match++) {
+            SplittableRandom r = new SplittableRandom(seed + match * SEED_GAMMA);
+            int p = r.nextInt(this.puzzles.length);
+            this.puzzles[p].getShuffledGrid(r, shuffled, this.shuffleSwaps);
+            if (games[p] == null) {
+                //the match keeps its grid in compact form, so shuffled can be reused
+                games[p] = new WaffleGame(this.puzzles[p], shuffled, this.swapBudget);
+                solutions[p] = this.puzzles[p].buildGrid();
+                GameMetrics.get().recordGameStarted();
+            }
+            else {
+                games[p].newMatch(shuffled);
+            }
+
+            WaffleGame game = games[p];
+            while (!game.isOver()) {
+                strategy.nextSwap(game, solutions[p], r, swap);
+                game.swap(swap[0], swap[1], swap[2], swap[3]);
+            }
+            results.add(game.puzzleFound(), game.maxSwaps() - game.remainingSwaps());
+        }
+        return results;
+    }
+
+    /**
+     * Chooses a swap of two random positions with different letters that are not in their
+     * correct positions.
+     *
+     * @param game     the match
+     * @param solution the grid of the puzzle of the match, solved (only its size is used)
+     * @param r        the generator of the random choices of the match
+     * @param swap     the array where the swap is written
+     */
+    private static void randomSwap(WaffleGame game, char[][] solution, SplittableRandom r,
+                                   int[] swap) {
+        int size = solution.length;
+        GridTopology topology = GridTopology.of(size);
+
+        int first = randomMisplaced(game, topology, r, '\0');
+        int second = randomMisplaced(game, topology, r,
+                                     game.letterAt(first / size + 1, first % size + 1));
+        swap[0] = first / size + 1;
+        swap[1] = first % size + 1;
+        swap[2] = second / size + 1;
+        swap[3] = second % size + 1;
+    }
+
+    /**
+     * @param game      the match
+     * @param topology  the topology of the grid of the match
+     * @param r         the generator of the random choices of the match
+     * @param different the letter the position chosen cannot have ('\0' for any letter)
+     * @return a random position (row * size + column) of the grid that is not in its correct
+     *         position and does not have the given letter
+     * @requires {@code there is such a position}
+     */
+    private static int randomMisplaced(WaffleGame game, GridTopology topology,
+                                       SplittableRandom r, char different) {
+        int size = topology.size();
+
+        //first counts the candidates and then walks to the chosen one
+        int candidates = 0;
+        for (int k = 0; k < topology.nrLetters(); k++) {
+            int cell = topology.letterCell(k);
+            if (game.swappablePosition(cell / size + 1, cell % size + 1) &&
+                game.letterAt(cell / size + 1, cell % size + 1) != different) {
+
+                candidates++;
+            }
+        }
+        int chosen = r.nextInt(candidates);
+        int position = -1;
+        for (int k = 0; position < 0; k++) {
+            int cell = topology.letterCell(k);
+            if (game.swappablePosition(cell / size + 1, cell % size + 1) &&
+                game.letterAt(cell / size + 1, cell % size + 1) != different) {
+
+                if (chosen == 0) {
+                    position = cell;
+                }
+                chosen--;
+            }
+        }
+        return position;
+    }
+
+    /**
+     * Chooses the swap that puts the most letters in their correct positions, which is the
+     * swap that most positions would show in green after it, choosing at random among the
+     * best ones.
+     *
+     * @param game     the match
+     * @param solution the grid of the puzzle of the match, solved
+     * @param r        the generator of the random choices of the match
+     * @param swap     the array where the swap is written
+     */
+    private static void greedySwap(WaffleGame game, char[][] solution, SplittableRandom r,
+                                   int[] swap) {
+        int size = solution.length;
+        GridTopology topology = GridTopology.of(size);
+
+        int best = -1;
+        int ties = 0;
+        for (int k1 = 0; k1 < topology.nrLetters(); k1++) {
+            int cell1 = topology.letterCell(k1);
+            int i1 = cell1 / size;
+            int j1 = cell1 % size;
+            if (game.swappablePosition(i1 + 1, j1 + 1)) {
+                char letter1 = game.letterAt(i1 + 1, j1 + 1);
+                for (int k2 = k1 + 1; k2 < topology.nrLetters(); k2++) {
+                    int cell2 = topology.letterCell(k2);
+                    int i2 = cell2 / size;
+                    int j2 = cell2 % size;
+                    char letter2 = game.letterAt(i2 + 1, j2 + 1);
+                    if (letter1 != letter2 && game.swappablePosition(i2 + 1, j2 + 1)) {
+                        int greens = (letter1 == solution[i2][j2] ? 1 : 0) +
+                                     (letter2 == solution[i1][j1] ? 1 : 0);
+                        if (greens > best) {
+                            best = greens;
+                            ties = 0;
+                        }
+                        //reservoir sampling among the swaps with the most greens
+                        if (greens == best && r.nextInt(++ties) == 0) {
+                            swap[0] = i1 + 1;
+                            swap[1] = j1 + 1;
+                            swap[2] = i2 + 1;
+                            swap[3] = j2 + 1;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Plays matches of the puzzles of PuzzleTables with each strategy and prints the results,
+     * the matches played per second, the bytes allocated per match and the share of the time
+     * taken by the garbage collector.
+     *
+     * @param args the number of matches (200000 if not given), the size of the puzzles (5 or
+     *             7), the language (EN or PT), the seed, the number of swaps of the shuffles
+     *             (shuffleSwaps() of the puzzles if not given) and the swap budget of the
+     *             matches (the maxSwaps() of a match of the puzzles if not given)
+     */
+    public static void main(String[] args) {
+        long matches = args.length > 0 ? Long.parseLong(args[0]) : 200000;
+        int size = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        boolean inEnglish = args.length <= 2 || args[2].equalsIgnoreCase("EN");
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 1;
+
+        PuzzleTables tables = PuzzleTables.of(size, inEnglish);
+        Puzzle[] puzzles = new Puzzle[tables.nrPuzzles()];
+        for (int id = 0; id < puzzles.length; id++) {
+            puzzles[id] = tables.puzzle(id);
+        }
+        int shuffleSwaps = args.length > 4 ? Integer.parseInt(args[4]) :
+                           puzzles[0].shuffleSwaps();
+        int swapBudget = args.length > 5 ? Integer.parseInt(args[5]) :
+                         WaffleGame.defaultMaxSwaps(puzzles[0]);
+        GameSimulator simulator = new GameSimulator(puzzles, shuffleSwaps, swapBudget);
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        System.out.printf("size %d %s, %d swaps per shuffle, %d swaps allowed, %d threads%n",
+                          size, inEnglish ? "EN" : "PT", shuffleSwaps, simulator.swapBudget(),
+                          ForkJoinPool.commonPool().getParallelism());
+        String[] names = new String[] {"random", "greedy", "optimal"};
+        Strategy[] strategies = new Strategy[] {RANDOM, GREEDY, OPTIMAL};
+        for (int s = 0; s < strategies.length; s++) {
+            //the first run warms up the JVM
+            simulator.simulate(strategies[s], Math.max(1, matches / 10), seed + 1);
+            long bytes = threads.getTotalThreadAllocatedBytes();
+            long gcMillis = gcMillis();
+            long start = System.nanoTime();
+            Results results = simulator.simulate(strategies[s], matches, seed);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            bytes = threads.getTotalThreadAllocatedBytes() - bytes;
+            gcMillis = gcMillis() - gcMillis;
+
+            System.out.printf("%-8s %s%n         %.0f matches per second, %.0f bytes per match, " +
+                              "%.1f%% of the time in GC%n", names[s], results, matches / seconds,
+                              (double) bytes / Math.max(1, matches), gcMillis / seconds / 10);
+        }
+    }
+
+    /**
+     * @return the total time the garbage collectors of the JVM took so far, in milliseconds
+     */
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, collector.getCollectionTime());
+        }
+        return millis;
+    }
+
+    /**
+     * The results of a set of matches: how many were won and how many swaps they used.
+     */
+    public static class Results {
+
+        //The largest number of swaps counted on its own in the distribution
+        private static final int MAX_SWAPS = 127;
+
+        //The number of matches played and won
+        private long matches;
+        private long wins;
+
+        //The total of the swaps used by the matches and by the matches won
+        private long swapsUsed;
+        private long swapsUsedInWins;
+
+        //The number of matches won with each number of swaps (the last one with that or more)
+        private final long[] winsBySwaps = new long[MAX_SWAPS + 1];
+
+        /**
+         * Counts a match.
+         *
+         * @param won       if the puzzle was found
+         * @param swapsUsed the number of swaps used
+         */
+        void add(boolean won, int swapsUsed) {
+            this.matches++;
+            this.swapsUsed += swapsUsed;
+            if (won) {
+                this.wins++;
+                this.swapsUsedInWins += swapsUsed;
+                this.winsBySwaps[Math.min(swapsUsed, MAX_SWAPS)]++;
+            }
+        }
+
+        /**
+         * Adds the matches of other results to these ones.
+         *
+         * @param other the other results
+         */
+        void add(Results other) {
+            this.matches += other.matches;
+            this.wins += other.wins;
+            this.swapsUsed += other.swapsUsed;
+            this.swapsUsedInWins += other.swapsUsedInWins;
+            for (int k = 0; k <= MAX_SWAPS; k++) {
+                this.winsBySwaps[k] += other.winsBySwaps[k];
+            }
+        }
+
+        /**
+         * @return the number of matches played
+         */
+        public long matches() {
+            return this.matches;
+        }
+
+        /**
+         * @return the number of matches won
+         */
+        public long wins() {
+            return this.wins;
+        }
+
+        /**
+         * @return the fraction of the matches that were won (0 if there are none)
+         */
+        public double winRate() {
+            return this.matches == 0 ? 0 : (double) this.wins / this.matches;
+        }
+
+        /**
+         * @return the mean number of swaps used by the matches (0 if there are none)
+         */
+        public double meanSwapsUsed() {
+            return this.matches == 0 ? 0 : (double) this.swapsUsed / this.matches;
+        }
+
+        /**
+         * @return the mean number of swaps used by the matches won (0 if there are none)
+         */
+        public double meanSwapsUsedInWins() {
+            return this.wins == 0 ? 0 : (double) this.swapsUsedInWins / this.wins;
+        }
+
+        /**
+         * @param swaps a number of swaps
+         * @return the number of matches won with the given number of swaps
+         * @requires {@code swaps >= 0}
+         */
+        public long winsWithSwaps(int swaps) {
+            return swaps > MAX_SWAPS ? 0 : this.winsBySwaps[swaps];
+        }
+
+        /**
+         * @return the number of matches, the win rate and the mean swaps used
+         */
+        public String toString() {
+            return String.format("%d matches, %.2f%% won, %.2f swaps used (%.2f in the wins)",
+                                 this.matches, 100 * winRate(), meanSwapsUsed(),
+                                 meanSwapsUsedInWins());
+        }
+    }
+
+    /**
+     * The task that plays a range of matches, splitting it in halves until it is small
+     * enough.
+     */
+    @SuppressWarnings("serial")
+    private class SimulationTask extends RecursiveTask<Results> {
+
+        //The strategy, the range of matches of this task and the seed of the simulation
+        private final Strategy strategy;
+        private final long from;
+        private final long to;
+        private final long seed;
+
+        SimulationTask(Strategy strategy, long from, long to, long seed) {
+            this.strategy = strategy;
+            this.from = from;
+            this.to = to;
+            this.seed = seed;
+        }
+
+        @Override
+        protected Results compute() {
+            Results results;
+            if (this.to - this.from > MATCHES_PER_TASK) {
+                long middle = (this.from + this.to) >>> 1;
+                SimulationTask left = new SimulationTask(this.strategy, this.from, middle,
+                                                         this.seed);
+                SimulationTask right = new SimulationTask(this.strategy, middle, this.to,
+                                                          this.seed);
+                left.fork();
+                results = right.compute();
+                results.add(left.join());
+            }
+            else {
+                results = play(this.strategy, this.from, this.to, this.seed);
+            }
+            return results;
+        }
+    }
+}
@@ -0,0 +1,4 @@
+public enum GridStatus {
+    VALID, NULL_PUZZLE_OR_GRID, WRONG_SIZE, NULL_ROW, NOT_SQUARE, MISSING_STAR,
+    INVALID_LETTER, DIFFERENT_LETTERS
+}
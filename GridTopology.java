@@ -0,0 +1,175 @@
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The objects of this class are immutable and describe the positions of the grids of a given
+ * size: which ones have letters, the horizontal and vertical words each one belongs to, the
+ * positions where two words cross and the ones in the diagonals of the grid, which the
+ * shuffles of Puzzle never move.
+ *
+ * The tables are built once for each size and shared by every Puzzle, WaffleGame and
+ * CompactBoard of that size, so classifying a position is a lookup. The positions are
+ * numbered row by row (index of the row * size + index of the column) and the letters are
+ * numbered in the same order, skipping the positions with a *.
+ */
+public final class GridTopology {
+
+    //The topologies already built, by size
+    private static final Map<Integer, GridTopology> TOPOLOGIES = new ConcurrentHashMap<>();
+
+    //The number of rows and columns of the grids
+    private final int size;
+
+    //The positions with letters, in the order of the letters
+    private final int[] letterCells;
+
+    //The number of the letter in each position (-1 for the positions with a *)
+    private final int[] letterIndex;
+
+    //The horizontal (and vertical) word of each position (-1 if it is in none)
+    private final int[] rowWord;
+    private final int[] colWord;
+
+    //Indicates if each position is in a diagonal of the grid
+    private final boolean[] diagonal;
+
+    /**
+     * @param size the number of rows and columns of the grids
+     * @return the topology of the grids of the given size
+     * @requires {@code size % 2 == 1 && size >= 3}
+     */
+    public static GridTopology of(int size) {
+        return TOPOLOGIES.computeIfAbsent(size, GridTopology::new);
+    }
+
+    /**
+     * Builds the tables of the grids of the given size.
+     *
+     * @param size the number of rows and columns of the grids
+     * @requires {@code size % 2 == 1 && size >= 3}
+     */
+    private GridTopology(int size) {
+        this.size = size;
+        this.letterCells = new int[size * size - (size / 2) * (size / 2)];
+        this.letterIndex = new int[size * size];
+        this.rowWord = new int[size * size];
+        this.colWord = new int[size * size];
+        this.diagonal = new boolean[size * size];
+
+        int k = 0;
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                int cell = i * size + j;
+                this.rowWord[cell] = i % 2 == 0 ? i / 2 : -1;
+                this.colWord[cell] = j % 2 == 0 ? j / 2 : -1;
+                this.diagonal[cell] = i == j || i == size - 1 - j;
+                this.letterIndex[cell] = -1;
+                if (i % 2 == 0 || j % 2 == 0) {
+                    this.letterCells[k] = cell;
+                    this.letterIndex[cell] = k;
+                    k++;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of rows and columns of the grids
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @return the number of positions with letters
+     */
+    public int nrLetters() {
+        return this.letterCells.length;
+    }
+
+    /**
+     * @return the number of horizontal words, which is also the number of vertical words
+     */
+    public int nrWords() {
+        return (this.size + 1) / 2;
+    }
+
+    /**
+     * @param w the number of a horizontal (or vertical) word
+     * @return the index of the row (or column) of the word
+     * @requires {@code 0 <= w && w < nrWords()}
+     */
+    public int line(int w) {
+        return 2 * w;
+    }
+
+    /**
+     * @param k the number of a letter
+     * @return the position of the letter
+     * @requires {@code 0 <= k && k < nrLetters()}
+     */
+    public int letterCell(int k) {
+        return this.letterCells[k];
+    }
+
+    /**
+     * @param i the index of the row
+     * @param j the index of the column
+     * @return the number of the letter in the given position (-1 if it has a *)
+     * @requires {@code 0 <= i && i < size() && 0 <= j && j < size()}
+     */
+    public int letterIndex(int i, int j) {
+        return this.letterIndex[i * this.size + j];
+    }
+
+    /**
+     * @param i the index of the row
+     * @param j the index of the column
+     * @return true if the given position has a letter or false if it has a *
+     * @requires {@code 0 <= i && i < size() && 0 <= j && j < size()}
+     */
+    public boolean isLetter(int i, int j) {
+        return this.letterIndex[i * this.size + j] >= 0;
+    }
+
+    /**
+     * @param i the index of the row
+     * @param j the index of the column
+     * @return the number of the horizontal word of the given position (-1 if it is in none)
+     * @requires {@code 0 <= i && i < size() && 0 <= j && j < size()}
+     */
+    public int rowWord(int i, int j) {
+        return this.rowWord[i * this.size + j];
+    }
+
+    /**
+     * @param i the index of the row
+     * @param j the index of the column
+     * @return the number of the vertical word of the given position (-1 if it is in none)
+     * @requires {@code 0 <= i && i < size() && 0 <= j && j < size()}
+     */
+    public int colWord(int i, int j) {
+        return this.colWord[i * this.size + j];
+    }
+
+    /**
+     * @param i the index of the row
+     * @param j the index of the column
+     * @return true if a horizontal and a vertical word cross in the given position
+     * @requires {@code 0 <= i && i < size() && 0 <= j && j < size()}
+     */
+    public boolean isCrossing(int i, int j) {
+        int cell = i * this.size + j;
+        return this.rowWord[cell] >= 0 && this.colWord[cell] >= 0;
+    }
+
+    /**
+     * @param i the index of the row
+     * @param j the index of the column
+     * @return true if the given position is in a diagonal of the grid or false if not
+     * @requires {@code 0 <= i && i < size() && 0 <= j && j < size()}
+     */
+    public boolean isDiagonal(int i, int j) {
+        return this.diagonal[i * this.size + j];
+    }
+}
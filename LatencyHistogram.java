@@ -0,0 +1,141 @@
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The objects of this class count how long an operation takes, in a histogram that many
+ * threads can record into at the same time without locks.
+ *
+ * The times are kept in log-linear buckets, as in HdrHistogram: the times below SUB_BUCKETS
+ * nanoseconds have a bucket each and every other power of two (from 2^e to 2^(e+1) - 1) is
+ * split in SUB_BUCKETS buckets of the same width. Each bucket is a LongAdder, so recording a
+ * time is a few uncontended additions, and the statistics are approximate: a percentile is
+ * the end of its bucket, at most 1 / SUB_BUCKETS (6.25%) above the time.
+ */
+public class LatencyHistogram {
+
+    //The number of buckets of each power of two (2^SUB_BITS) and the total number of buckets
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+    //The number of times of each bucket
+    private final LongAdder[] buckets;
+
+    //The total of the times recorded and the longest one
+    private final LongAdder totalNanos;
+    private final LongAccumulator maxNanos;
+
+    /**
+     * Builds an empty histogram.
+     */
+    public LatencyHistogram() {
+        this.buckets = new LongAdder[BUCKETS];
+        for (int b = 0; b < BUCKETS; b++) {
+            this.buckets[b] = new LongAdder();
+        }
+        this.totalNanos = new LongAdder();
+        this.maxNanos = new LongAccumulator(Math::max, 0);
+    }
+
+    /**
+     * Records the time of an operation.
+     *
+     * @param nanos the time of the operation, in nanoseconds
+     * @requires {@code nanos >= 0}
+     */
+    public void record(long nanos) {
+        this.buckets[bucket(nanos)].increment();
+        this.totalNanos.add(nanos);
+        this.maxNanos.accumulate(nanos);
+    }
+
+    /**
+     * @return the number of times recorded
+     */
+    public long count() {
+        long count = 0;
+        for (LongAdder bucket : this.buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    /**
+     * @return the mean of the times recorded, in nanoseconds (0 if there are none)
+     */
+    public double meanNanos() {
+        long count = count();
+        return count == 0 ? 0 : (double) this.totalNanos.sum() / count;
+    }
+
+    /**
+     * @return the longest time recorded, in nanoseconds
+     */
+    public long maxNanos() {
+        return this.maxNanos.get();
+    }
+
+    /**
+     * @param percentile the percentage of the times, between 0 and 100
+     * @return the time, in nanoseconds, within which that percentage of the operations ended
+     *         (rounded up to the end of its bucket, but never past the longest time)
+     */
+    public long percentileNanos(double percentile) {
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            counts[b] = this.buckets[b].sum();
+            count += counts[b];
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+        long seen = 0;
+        int bucket = 0;
+        while (bucket < BUCKETS - 1 && seen + counts[bucket] < rank) {
+            seen += counts[bucket];
+            bucket++;
+        }
+        return Math.min(bucketEnd(bucket), maxNanos());
+    }
+
+    /**
+     * @param nanos a time, in nanoseconds
+     * @return the bucket of the time
+     * @requires {@code nanos >= 0}
+     */
+    private static int bucket(long nanos) {
+        int bucket = (int) nanos;
+        if (nanos >= SUB_BUCKETS) {
+            //the position of the highest bit and the SUB_BITS bits that follow it
+            int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+            int shift = exponent - SUB_BITS;
+            bucket = ((shift + 1) << SUB_BITS) + (int) (nanos >>> shift) - SUB_BUCKETS;
+        }
+        return bucket;
+    }
+
+    /**
+     * @param bucket a bucket
+     * @return the longest time of the bucket, in nanoseconds
+     */
+    private static long bucketEnd(int bucket) {
+        long end = bucket;
+        if (bucket >= SUB_BUCKETS) {
+            int shift = (bucket >>> SUB_BITS) - 1;
+            long start = (long) (SUB_BUCKETS + (bucket & (SUB_BUCKETS - 1))) << shift;
+            end = start + (1L << shift) - 1;
+        }
+        return end;
+    }
+
+    /**
+     * Forgets every time recorded. The times recorded while it resets may be kept or not.
+     */
+    public void reset() {
+        for (LongAdder bucket : this.buckets) {
+            bucket.reset();
+        }
+        this.totalNanos.reset();
+        this.maxNanos.reset();
+    }
+}
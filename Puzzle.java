@@ -1,5 +1,5 @@
-import java.lang.Character;
-import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
 import java.lang.Math;
 
 /** 
@@ -10,6 +10,13 @@ import java.lang.Math;
  */
 public class Puzzle {
 
+    //The smallest and the largest number of characters of the words of a puzzle
+    public static final int MIN_SIZE = 5;
+    public static final int MAX_SIZE = 21;
+
+    //The number of letters between A and Z
+    private static final int ALPHABET = 26;
+
     //The arrays of horizontal words and vertical words, respectively, that will form the puzzle
     private String[] hWords;
     private String[] vWords;
@@ -17,12 +24,26 @@ public class Puzzle {
     //The number of characters of the words
     private int size;
 
+    //The classification of the positions of the grids of the puzzle
+    private GridTopology topology;
+
+    //The number of times each letter ('A' to 'Z') appears in the grid of the puzzle
+    private int[] letterCounts;
+
+    //The fingerprint of the words, computed the first time it is asked for (0 until then)
+    private long fingerprint;
+
+    //The puzzle matrix in compact form, built the first time it is asked for (null until then)
+    private CompactBoard solution;
+
     /** 
      * Verifies if the words for the puzzle are valid by verifying if they respect 
      * the following conditions:
-     * 1- the size is an odd number between 4 and 8 (not included);
+     * 1- the size is an odd number between MIN_SIZE and MAX_SIZE (included);
      * 2- both arrays have the necessary length to be combined;
-     * 3- the words are not null, have the same length as size and only have uppercase letters.
+     * 3- the words are not null, have the same length as size and only have uppercase letters
+     *    between A and Z (letters with accents, like Ç, are not valid: the grids of the game,
+     *    the solver and CompactBoard only hold those 26 letters).
      *
      * @param size   the size that the words for the puzzle should have
      * @param hWords the array of horizontal words that will form the main rows of the puzzle
@@ -34,7 +55,7 @@ public class Puzzle {
         boolean validWords = true;
         int i = 0;
 
-        if (size % 2 != 1 || size <= 4 || size >= 8) {
+        if (size % 2 != 1 || size < MIN_SIZE || size > MAX_SIZE) {
             validWords = false;
         }
         else if (hWords.length != (size + 1) / 2 || vWords.length != (size + 1) / 2) {
@@ -44,7 +65,7 @@ public class Puzzle {
             for (String s : hWords) {
                 validWords = validWords && s != null && s.length() == size;
                 while (validWords && i < s.length()) {
-                    validWords = validWords && Character.isUpperCase(s.charAt(i));
+                    validWords = validWords && s.charAt(i) >= 'A' && s.charAt(i) <= 'Z';
                     i++;
                 }
                 i = 0;
@@ -52,7 +73,7 @@ public class Puzzle {
             for (String s : vWords) {
                 validWords = validWords && s != null && s.length() == size;
                 while (validWords && i < s.length()) {
-                    validWords = validWords && Character.isUpperCase(s.charAt(i));
+                    validWords = validWords && s.charAt(i) >= 'A' && s.charAt(i) <= 'Z';
                     i++;
                 }
                 i = 0;
@@ -94,6 +115,7 @@ public class Puzzle {
      */
     public Puzzle(int size, String[] hWords, String[] vWords) {
         this.size = size;
+        this.topology = GridTopology.of(size);
         this.hWords = new String[hWords.length];
         this.vWords = new String[vWords.length];
 
@@ -101,6 +123,17 @@ public class Puzzle {
             this.hWords[i] = hWords[i];
             this.vWords[i] = vWords[i];
         }
+
+        //the vertical words only add the letters that are not in a horizontal word
+        this.letterCounts = new int[ALPHABET];
+        for (int w = 0; w < hWords.length; w++) {
+            for (int k = 0; k < size; k++) {
+                this.letterCounts[hWords[w].charAt(k) - 'A']++;
+                if (this.topology.rowWord(k, 0) < 0) {
+                    this.letterCounts[vWords[w].charAt(k) - 'A']++;
+                }
+            }
+        }
     }
 
     /** 
@@ -117,6 +150,28 @@ public class Puzzle {
         return this.hWords.length + this.vWords.length;
     }
 
+    /** 
+     * Identifies the puzzle by its words, for example in the events of GameEvents: puzzles
+     * with the same words have the same fingerprint, in every run.
+     *
+     * @return a 64-bit FNV-1a hash of the horizontal words followed by the vertical words
+     *         (never 0)
+     */
+    public long fingerprint() {
+        if (this.fingerprint == 0) {
+            long hash = 0xCBF29CE484222325L;
+            for (String[] words : new String[][] {this.hWords, this.vWords}) {
+                for (String word : words) {
+                    for (int k = 0; k < word.length(); k++) {
+                        hash = (hash ^ word.charAt(k)) * 0x100000001B3L;
+                    }
+                }
+            }
+            this.fingerprint = hash == 0 ? 1 : hash;
+        }
+        return this.fingerprint;
+    }
+
     /** 
      * @return the number of swaps that needs to be made in the puzzle to create the inicial grid
      */
@@ -145,228 +200,324 @@ public class Puzzle {
     }
 
     /** 
-     * Iniciallizes the puzzle matrix then swaps one letter in each even row and column with
-     * an adjacent and swaps a number of letters in each row with their correspondents
-     * in the respective columns to create a shuffled grid.
+     * Iniciallizes the puzzle matrix then moves some of its letters, out of the diagonals,
+     * so that the shuffled grid needs exactly shuffleSwaps() swaps to be solved.
      *
      * @return the shuffled puzzle matrix
-     * @ensures {@code maximum ammount of swaps made: shuffleSwaps(),
+     * @ensures {@code the minimum number of swaps that solve \result is shuffleSwaps()
+     *           (or less, only if the letters of the puzzle do not allow it),
      *           \result only has letters in odd indexes of rows and/or columns,
      *           the letters in the diagonals of the matrix do not get shuffled,
      *           \result has * in even indexes of rows and columns (at the same time)}
      */
     public char[][] getShuffledGrid() {
-        char[][] grid = buildGrid();
-        Random r = new Random();
-
-        grid = shuffleWithAdjacent(grid, r);
-        grid = switchRowColOfLetters(grid, r);
-        return grid;
+        return getShuffledGrid(new SplittableRandom(), new char[size()][size()]);
     }
 
     /** 
-     * Creates the puzzle matrix.
+     * Builds the same shuffled grid for the same puzzle and seed, on any JVM.
      *
-     * @return the puzzle matrix
-     * @requires {@code validWords(this.size, this.hWords, this.vWords) &&
-     *            overlappedWords(this.size, this.hWords, this.vWords)}
-     * @ensures {@code \result only has letters in odd indexes of rows and/or columns,
-     *           \result has * in even indexes of rows and columns (at the same time)}
+     * @param seed the seed of the random choices of the shuffle
+     * @return the shuffled puzzle matrix
+     * @ensures {@code the same as getShuffledGrid()}
      */
-    public char[][] buildGrid() {
-        char[][] grid = new char[size()][size()];
+    public char[][] getShuffledGrid(long seed) {
+        return getShuffledGrid(new SplittableRandom(seed), new char[size()][size()]);
+    }
 
-        for (int i = 0; i < size(); i++) {
-            for (int j = 0; j < size(); j++) {
-                if (i % 2 == 0 && j % 2 != 0) {
-                    grid[i][j] = getLetterInHorizontalWord(j + 1, i - (i / 2) + 1);
-                }
-                else if (j % 2 == 0) {
-                    grid[i][j] = getLetterInVerticalWord(i + 1, j - (j / 2) + 1);
-                }
-                else if (i % 2 != 0 && j % 2 != 0) {
-                    grid[i][j] = '*';
-                }
-            }
-        }
-        return grid;
+    /** 
+     * Shuffles the puzzle matrix into a given matrix, which can be reused between calls,
+     * with the random choices given by r. The same puzzle and a generator in the same state
+     * give the same grid on any JVM.
+     *
+     * @param r    the generator of the random choices of the shuffle
+     * @param grid the matrix where the shuffled grid is written
+     * @return grid
+     * @requires {@code r != null && grid is a square matrix with size() rows}
+     * @ensures {@code the same as getShuffledGrid()}
+     */
+    public char[][] getShuffledGrid(SplittableRandom r, char[][] grid) {
+        return getShuffledGrid(r, grid, shuffleSwaps());
     }
 
     /** 
-     * Swaps one letter in each even row and column of a grid with an adjacent.
+     * Shuffles the puzzle matrix into a given matrix so that the minimum number of swaps
+     * that solve it is exactly the given one, with the random choices given by r.
+     *
+     * The letters out of the diagonals are rotated along cycles of positions. Every cycle
+     * starts in a position of the same letter (the hub) and then goes through letters in a
+     * random order that is the same for every cycle, each letter at most once. A cycle of
+     * misplaced letters that does not pass through the hub would have to go back in that
+     * order, so every way of solving the grid closes exactly these cycles and the minimum
+     * number of swaps is the number of positions moved minus the number of cycles. The
+     * shuffle takes a constant time per position, without retries.
      *
-     * @param grid the grid
-     * @param r    random used to choose the letter in each row and column with an even index
-     *             that will be swapped and with which letter it will be swapped
-     * @return the shuffled grid
-     * @requires {@code grid != null}
-     * @ensures {@code the letters in the diagonals of the matrix and the * do not get shuffled}
+     * @param r     the generator of the random choices of the shuffle
+     * @param grid  the matrix where the shuffled grid is written
+     * @param swaps the minimum number of swaps that should solve the shuffled grid
+     * @return grid
+     * @requires {@code r != null && grid is a square matrix with size() rows && swaps >= 0}
+     * @ensures {@code the minimum number of swaps that solve \result is swaps, or the largest
+     *           number these cycles reach with the letters of the puzzle if it is smaller,
+     *           the letters in the diagonals of the matrix and the * do not get shuffled}
      */
-    private char[][] shuffleWithAdjacent(char[][] grid, Random r) {
-        char toSwap = ' ';
-        int randomPos = 0;
-        int swapsTo = 0;
-        int chooseDirection = 0;
-
-        int[] swapLeftOrRight = new int[2];
-        int[] swapUpOrDown = new int[2];
-
-        for (int i = 0; i < nrWords(); i += 2) {
-            do {
-                randomPos = r.nextInt(size());
-            } while (isInDiagonal(i, randomPos));
-
-            toSwap = grid[i][randomPos];
-
-            if (randomPos == 0) {
-                swapLeftOrRight[0] = 1;
-                swapLeftOrRight[1] = size() - 1;
-                chooseDirection = r.nextInt(swapLeftOrRight.length);
-                swapsTo = swapLeftOrRight[chooseDirection];
-
-                if (isInDiagonal(i, randomPos + swapsTo)) {
-                    chooseDirection = Math.abs(chooseDirection - 1); //the other direction
-                    swapsTo = swapLeftOrRight[chooseDirection];
-                }
-                if (!isInDiagonal(i, randomPos + swapsTo)) {
-                    grid[i][randomPos] = grid[i][randomPos + swapsTo];
-                    grid[i][randomPos + swapsTo] = toSwap;
-                }
+    public char[][] getShuffledGrid(SplittableRandom r, char[][] grid, int swaps) {
+        GameEvents.Shuffle event = new GameEvents.Shuffle();
+        event.begin();
+        long start = System.nanoTime();
+        fillGrid(grid);
+        int size = size();
+
+        //the positions out of the diagonals, grouped by letter and in a random order in each
+        //letter: the positions of the letter l are cells[first[l]] to cells[first[l + 1] - 1]
+        int[] first = new int[ALPHABET + 1];
+        for (int k = 0; k < this.topology.nrLetters(); k++) {
+            int cell = this.topology.letterCell(k);
+            if (!this.topology.isDiagonal(cell / size, cell % size)) {
+                first[grid[cell / size][cell % size] - 'A' + 1]++;
             }
-            else if (randomPos == size() - 1) {
-                swapLeftOrRight[0] = -(size() - 1);
-                swapLeftOrRight[1] = -1;
-                chooseDirection = r.nextInt(swapLeftOrRight.length);
-                swapsTo = swapLeftOrRight[chooseDirection];
-                
-                if (isInDiagonal(i, randomPos + swapsTo)) {
-                    chooseDirection = Math.abs(chooseDirection - 1); //the other direction
-                    swapsTo = swapLeftOrRight[chooseDirection];
-                }
-                if (!isInDiagonal(i, randomPos + swapsTo)) {
-                    grid[i][randomPos] = grid[i][randomPos + swapsTo];
-                    grid[i][randomPos + swapsTo] = toSwap;
-                }
+        }
+        int maxCount = 0;
+        for (int l = 0; l < ALPHABET; l++) {
+            maxCount = Math.max(maxCount, first[l + 1]);
+            first[l + 1] += first[l];
+        }
+        int[] cells = new int[first[ALPHABET]];
+        int[] filled = new int[ALPHABET];
+        for (int k = 0; k < this.topology.nrLetters(); k++) {
+            int cell = this.topology.letterCell(k);
+            if (!this.topology.isDiagonal(cell / size, cell % size)) {
+                int l = grid[cell / size][cell % size] - 'A';
+                cells[first[l] + filled[l]] = cell;
+                filled[l]++;
             }
-            else {
-                swapLeftOrRight[0] = -1;
-                swapLeftOrRight[1] = 1;
-                chooseDirection = r.nextInt(swapLeftOrRight.length);
-                swapsTo = swapLeftOrRight[chooseDirection];
-                
-                if (isInDiagonal(i, randomPos + swapsTo)) {
-                    chooseDirection = Math.abs(chooseDirection - 1); //the other direction
-                    swapsTo = swapLeftOrRight[chooseDirection];
-                }
-                if (!isInDiagonal(i, randomPos + swapsTo)) {
-                    grid[i][randomPos] = grid[i][randomPos + swapsTo];
-                    grid[i][randomPos + swapsTo] = toSwap;
-                }
+        }
+        for (int l = 0; l < ALPHABET; l++) {
+            shuffle(cells, first[l], first[l + 1], r);
+        }
+
+        //the order of the letters in the cycles
+        int[] order = new int[ALPHABET];
+        for (int l = 0; l < ALPHABET; l++) {
+            order[l] = l;
+        }
+        shuffle(order, 0, ALPHABET, r);
+
+        //reach[c] is the number of positions that c cycles can go through (at most one of each
+        //letter per cycle), counting the hub
+        int[] reach = new int[maxCount + 1];
+        for (int l = 0; l < ALPHABET; l++) {
+            for (int c = 1; c <= first[l + 1] - first[l]; c++) {
+                reach[c]++;
             }
         }
+        for (int c = 1; c <= maxCount; c++) {
+            reach[c] += reach[c - 1];
+        }
 
-        for (int j = 0; j < nrWords(); j += 2) {
-            do {
-                randomPos = r.nextInt(size());
-            } while (j == randomPos || j == size() - 1 - randomPos);
-
-            toSwap = grid[randomPos][j];
-
-            if (randomPos == 0) {
-                swapUpOrDown[0] = 1;
-                swapUpOrDown[1] = size() - 1;
-                chooseDirection = r.nextInt(swapUpOrDown.length);
-                swapsTo = swapUpOrDown[chooseDirection];
-                
-                if (isInDiagonal(j, randomPos + swapsTo)) {
-                    chooseDirection = Math.abs(chooseDirection - 1); //the other direction
-                    swapsTo = swapLeftOrRight[chooseDirection];
-                }
-                if (!isInDiagonal(j, randomPos + swapsTo)) {
-                    grid[randomPos][j] = grid[randomPos + swapsTo][j];
-                    grid[randomPos + swapsTo][j] = toSwap;
-                }
+        //the first letter in the random order that reaches the swaps is the hub, with a random
+        //number of cycles; if none does, the one that reaches further
+        int hub = -1;
+        int cycles = 0;
+        int target = 0;
+        for (int o = 0; o < ALPHABET && target < swaps; o++) {
+            int count = first[order[o] + 1] - first[order[o]];
+            int maxCycles = Math.min(count, swaps);
+            int c = 1;
+            while (c < maxCycles && reach[c] - c < swaps) {
+                c++;
             }
-            else if (randomPos == size() - 1) {
-                swapUpOrDown[0] = -(size() - 1);
-                swapUpOrDown[1] = -1;
-                chooseDirection = r.nextInt(swapUpOrDown.length);
-                swapsTo = swapUpOrDown[chooseDirection];
-                
-                if (isInDiagonal(j, randomPos + swapsTo)) {
-                    chooseDirection = Math.abs(chooseDirection - 1); //the other direction
-                    swapsTo = swapLeftOrRight[chooseDirection];
-                }
-                if (!isInDiagonal(j, randomPos + swapsTo)) {
-                    grid[randomPos][j] = grid[randomPos + swapsTo][j];
-                    grid[randomPos + swapsTo][j] = toSwap;
-                }
+            if (maxCycles > 0 && reach[c] - c >= swaps) {
+                hub = order[o];
+                cycles = c + nextInt(r, maxCycles - c + 1);
+                target = swaps;
             }
-            else {
-                swapUpOrDown[0] = -1;
-                swapUpOrDown[1] = 1;
-                chooseDirection = r.nextInt(swapUpOrDown.length);
-                swapsTo = swapUpOrDown[chooseDirection];
-                
-                if (isInDiagonal(j, randomPos + swapsTo)) {
-                    chooseDirection = Math.abs(chooseDirection - 1); //the other direction
-                    swapsTo = swapLeftOrRight[chooseDirection];
-                }
-                if (!isInDiagonal(j, randomPos + swapsTo)) {
-                    grid[randomPos][j] = grid[randomPos + swapsTo][j];
-                    grid[randomPos + swapsTo][j] = toSwap;
-                }
+            else if (maxCycles > 0 && reach[maxCycles] - maxCycles > target) {
+                hub = order[o];
+                cycles = maxCycles;
+                target = reach[maxCycles] - maxCycles;
             }
         }
+        if (hub >= 0 && target > 0) {
+            cycles = Math.min(cycles, target);
+            rotateCycles(grid, cells, first, order, hub, cycles, target, r);
+        }
+        GameMetrics.get().recordShuffle(System.nanoTime() - start);
+        if (event.shouldCommit()) {
+            event.size = size;
+            event.puzzleId = fingerprint();
+            event.swaps = swaps;
+            event.commit();
+        }
         return grid;
     }
 
     /** 
-     * Swaps a number of letters in each row of a grid with their correspondents in the
-     * respective columns.
+     * Rotates the letters of a grid along cycles that start in the positions of the hub and
+     * then go through the letters in the given order, moving the given number of positions
+     * besides the ones of the hub.
      *
-     * @param grid the grid
-     * @param r    random used to choose the letter in each row of the grid with an even index
-     *             that will be swapped
-     * @return the shuffled grid
-     * @requires {@code grid != null}
-     * @ensures {@code the letters in the diagonals of the matrix and the * do not get shuffled}
+     * @param grid   the grid
+     * @param cells  the positions that can be moved, grouped by letter
+     * @param first  the index in cells of the first position of each letter
+     * @param order  the order of the letters in the cycles
+     * @param hub    the letter where every cycle starts
+     * @param cycles the number of cycles
+     * @param moved  the number of positions moved besides the ones of the hub
+     * @param r      the generator of the random choices of the positions
+     * @requires {@code 0 < cycles && cycles <= moved && the letters other than the hub have 
+     *            at least moved positions, counting at most cycles of each letter}
      */
-    private char[][] switchRowColOfLetters(char[][] grid, Random r) {
-        char toSwap = ' ';
-        int randomPos = 0;
-
-        for (int i = 0; i < nrWords(); i += 2) {
-            for (int nrLetters = 0; nrLetters < (size() - 3) / 2; nrLetters++) {
-                do {
-                    randomPos = r.nextInt(size());
-                } while (isInDiagonal(i, randomPos));
-
-                toSwap = grid[i][randomPos];
-                grid[i][randomPos] = grid[randomPos][i];
-                grid[randomPos][i] = toSwap;
+    private void rotateCycles(char[][] grid, int[] cells, int[] first, int[] order, int hub,
+                              int cycles, int moved, RandomGenerator r) {
+        int size = size();
+
+        //the positions each cycle can go through, at most cycles of each letter, in the order
+        int[] candidates = new int[cells.length];
+        int nrCandidates = 0;
+        for (int o = 0; o < ALPHABET; o++) {
+            int l = order[o];
+            if (l != hub) {
+                int end = Math.min(first[l + 1], first[l] + cycles);
+                for (int k = first[l]; k < end; k++) {
+                    candidates[nrCandidates] = cells[k];
+                    nrCandidates++;
+                }
+            }
+        }
+
+        //a random choice of the moved positions among the candidates, keeping their order
+        int[] choice = new int[nrCandidates];
+        for (int k = 0; k < nrCandidates; k++) {
+            choice[k] = k;
+        }
+        boolean[] chosen = new boolean[nrCandidates];
+        for (int k = 0; k < moved; k++) {
+            int other = k + nextInt(r, nrCandidates - k);
+            int tmp = choice[k];
+            choice[k] = choice[other];
+            choice[other] = tmp;
+            chosen[choice[k]] = true;
+        }
+
+        /*The moved positions are dealt to the cycles in turns, so the positions of a letter
+        (at most cycles) go to different cycles and each cycle keeps the order of the letters*/
+        int[] path = new int[moved];
+        int nrMoved = 0;
+        for (int k = 0; k < nrCandidates; k++) {
+            if (chosen[k]) {
+                path[nrMoved] = candidates[k];
+                nrMoved++;
             }
         }
+        for (int c = 0; c < cycles; c++) {
+            int start = cells[first[hub] + c];
+            char carried = grid[start / size][start % size];
+            for (int k = c; k < moved; k += cycles) {
+                int cell = path[k];
+                char tmp = grid[cell / size][cell % size];
+                grid[cell / size][cell % size] = carried;
+                carried = tmp;
+            }
+            grid[start / size][start % size] = carried;
+        }
+    }
+
+    /** 
+     * Creates the puzzle matrix.
+     *
+     * @return the puzzle matrix
+     * @requires {@code validWords(this.size, this.hWords, this.vWords) &&
+     *            overlappedWords(this.size, this.hWords, this.vWords)}
+     * @ensures {@code \result only has letters in odd indexes of rows and/or columns,
+     *           \result has * in even indexes of rows and columns (at the same time)}
+     */
+    public char[][] buildGrid() {
+        char[][] grid = new char[size()][size()];
+        fillGrid(grid);
         return grid;
     }
 
     /** 
-     * Verifies if the given positions correspond to a character in a diagonal of a grid.
+     * The puzzle matrix in compact form, shared by every match of the puzzle, so a match
+     * does not keep a copy of it. It must not be changed.
      *
-     * @param i the row of the character
-     * @param j the column of the character
-     * @return true if the character belongs to a diagonal or false if not
+     * @return the puzzle matrix in compact form
      */
-    private boolean isInDiagonal(int i, int j) {
-        boolean isInDiagonal = false;
+    CompactBoard solution() {
+        CompactBoard solution = this.solution;
+        if (solution == null) {
+            //its fields are final, so a thread that sees it sees it whole
+            solution = new CompactBoard(buildGrid());
+            this.solution = solution;
+        }
+        return solution;
+    }
 
-        if (i == j || i == size() - 1 - j) {
-            isInDiagonal = true;
+    /** 
+     * Writes the puzzle matrix in a given matrix.
+     *
+     * @param grid the matrix
+     * @requires {@code grid is a square matrix with size() rows}
+     */
+    private void fillGrid(char[][] grid) {
+        //the rows of the horizontal words are copied whole
+        for (int w = 0; w < this.hWords.length; w++) {
+            this.hWords[w].getChars(0, size(), grid[this.topology.line(w)], 0);
+        }
+        for (int i = 0; i < size(); i++) {
+            if (this.topology.rowWord(i, 0) < 0) {
+                for (int j = 0; j < size(); j++) {
+                    int word = this.topology.colWord(i, j);
+                    grid[i][j] = word >= 0 ? this.vWords[word].charAt(i) : '*';
+                }
+            }
         }
-        return isInDiagonal;
     }
-}
 
+    /** 
+     * @return the classification of the positions of the grids of the puzzle
+     */
+    GridTopology topology() {
+        return this.topology;
+    }
 
+    /** 
+     * @param letter an uppercase letter between A and Z
+     * @return the number of times the letter appears in the grid of the puzzle
+     */
+    int letterCount(char letter) {
+        return this.letterCounts[letter - 'A'];
+    }
 
+    /** 
+     * Shuffles a part of an array.
+     *
+     * @param values the array
+     * @param from   the index of the first value of the part
+     * @param to     the index after the last value of the part
+     * @param r      the generator of the random choices of the shuffle
+     * @requires {@code 0 <= from && from <= to && to <= values.length}
+     */
+    private static void shuffle(int[] values, int from, int to, RandomGenerator r) {
+        for (int k = to - 1; k > from; k--) {
+            int other = from + nextInt(r, k - from + 1);
+            int tmp = values[k];
+            values[k] = values[other];
+            values[other] = tmp;
+        }
+    }
 
+    /** 
+     * Draws a number with the same method on every JVM, from the next long of the generator
+     * (the bounded methods of the generators are not specified for every implementation).
+     *
+     * @param r     the generator
+     * @param bound the number of possible values
+     * @return a number between 0 (included) and bound (not included)
+     * @requires {@code 0 < bound}
+     */
+    private static int nextInt(RandomGenerator r, int bound) {
+        return (int) (((r.nextLong() >>> 32) * bound) >>> 32);
+    }
+}
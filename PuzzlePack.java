@@ -0,0 +1,290 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/** 
+ * The objects of this class give access to the puzzles of one size and language stored in a
+ * puzzle pack file, offering the same methods as PuzzleGenerator.
+ *
+ * A pack file is read through a memory-mapped buffer and has the following format
+ * (big-endian):
+ * - header: the magic "WPAK", the version (short) and the number of sections (short);
+ * - one 24 byte header per section: the size (byte), the language in two ASCII letters,
+ *   a padding byte, the number of puzzles (int), the offset of the puzzles in the file
+ *   (long) and the CRC32 of the puzzles (long);
+ * - the puzzles of each section, each one as its (size + 1) / 2 horizontal words followed
+ *   by its (size + 1) / 2 vertical words, in fixed-width ASCII with no separators.
+ * Opening a pack only reads the headers, each word is read from its offset when asked for.
+ * A pack file can have up to 2 GB (more than 30 million puzzles of size 7).
+ */
+public class PuzzlePack {
+
+    //The first bytes of every pack file and the version of the format
+    private static final int MAGIC = 0x5750414B;
+    private static final short VERSION = 1;
+
+    //The number of bytes of the file header and of each section header
+    private static final int HEADER_BYTES = 8;
+    private static final int SECTION_BYTES = 24;
+
+    //The language codes of the puzzles in english and in portuguese
+    public static final String EN = "EN";
+    public static final String PT = "PT";
+
+    //The puzzles of the whole file
+    private final ByteBuffer buffer;
+
+    //The number of characters of the words
+    private final int size;
+
+    //The number of puzzles of the section and where they start in the file
+    private final int nrPuzzles;
+    private final long offset;
+
+    //The CRC32 written for the puzzles of the section
+    private final long checksum;
+
+    /** 
+     * Opens the section of a pack file with the puzzles of the given size and language.
+     *
+     * @param file      the pack file
+     * @param size      the number of characters of the words of the puzzles
+     * @param inEnglish if the puzzles are in english (or in portuguese)
+     * @throws IOException if the file cannot be read, is not a valid pack file or does not
+     *                     have puzzles of the given size and language
+     */
+    public PuzzlePack(Path file, int size, boolean inEnglish) throws IOException {
+        GameEvents.PackLoad event = new GameEvents.PackLoad();
+        event.begin();
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("puzzle packs are limited to 2 GB: " + file);
+            }
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        mapped.order(ByteOrder.BIG_ENDIAN);
+
+        if (mapped.limit() < HEADER_BYTES || mapped.getInt(0) != MAGIC ||
+            mapped.getShort(4) != VERSION) {
+
+            throw new IOException("not a puzzle pack: " + file);
+        }
+
+        String language = inEnglish ? EN : PT;
+        int sections = mapped.getShort(6);
+        long tableEnd = HEADER_BYTES + (long) sections * SECTION_BYTES;
+        if (sections < 0 || tableEnd > mapped.limit()) {
+            throw new IOException("corrupted section table in puzzle pack: " + file);
+        }
+        int section = -1;
+        for (int s = 0; s < sections && section < 0; s++) {
+            int at = HEADER_BYTES + s * SECTION_BYTES;
+            if (mapped.get(at) == size && mapped.get(at + 1) == language.charAt(0) &&
+                mapped.get(at + 2) == language.charAt(1)) {
+
+                section = at;
+            }
+        }
+        if (section < 0) {
+            throw new IOException("no puzzles of size " + size + " in " + language + ": " + file);
+        }
+
+        this.buffer = mapped;
+        this.size = size;
+        this.nrPuzzles = mapped.getInt(section + 4);
+        this.offset = mapped.getLong(section + 8);
+        this.checksum = mapped.getLong(section + 16);
+
+        //the puzzles of a section are after the section table and within the file
+        if (this.nrPuzzles < 0 || this.offset < tableEnd) {
+            throw new IOException("corrupted section header in puzzle pack: " + file);
+        }
+        if (this.offset > mapped.limit() - (long) this.nrPuzzles * puzzleBytes(size)) {
+            throw new IOException("truncated puzzle pack: " + file);
+        }
+        if (event.shouldCommit()) {
+            event.size = size;
+            event.language = language;
+            event.puzzles = this.nrPuzzles;
+            event.commit();
+        }
+    }
+
+    /** 
+     * @return the number of puzzles in the section
+     */
+    public int nrPuzzles() {
+        return this.nrPuzzles;
+    }
+
+    /** 
+     * @param id the number of the puzzle
+     * @return the horizontal words of the puzzle
+     * @requires {@code 0 <= id && id < nrPuzzles()}
+     */
+    public String[] getHorizontalWords(int id) {
+        return readWords(id, 0);
+    }
+
+    /** 
+     * @param id the number of the puzzle
+     * @return the vertical words of the puzzle
+     * @requires {@code 0 <= id && id < nrPuzzles()}
+     */
+    public String[] getVerticalWords(int id) {
+        return readWords(id, (this.size + 1) / 2);
+    }
+
+    /** 
+     * Verifies if the puzzles of the section are intact by calculating their CRC32 and
+     * comparing it with the one written in the file. This reads the whole section.
+     *
+     * @return true if the checksums are the same or false if not
+     */
+    public boolean verify() {
+        CRC32 crc = new CRC32();
+        crc.update(this.buffer.slice((int) this.offset, this.nrPuzzles * puzzleBytes(this.size)));
+        return crc.getValue() == this.checksum;
+    }
+
+    /** 
+     * Writes a pack file with the given sections of puzzles.
+     *
+     * @param file      the pack file
+     * @param sizes     the size of the words of each section
+     * @param languages the language code (EN or PT) of each section
+     * @param puzzles   the puzzles of each section, each one as {hWords, vWords}
+     * @throws IOException if the file cannot be written
+     * @requires {@code sizes.length == languages.length && sizes.length == puzzles.size() &&
+     *            every puzzle respects Puzzle.validWords and Puzzle.overlappedWords}
+     */
+    public static void write(Path file, int[] sizes, String[] languages,
+                             List<List<String[][]>> puzzles) throws IOException {
+
+        ByteBuffer headers = ByteBuffer.allocate(HEADER_BYTES + sizes.length * SECTION_BYTES);
+        headers.putInt(MAGIC).putShort(VERSION).putShort((short) sizes.length);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                                                    StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING)) {
+            long offset = headers.capacity();
+            channel.position(offset);
+
+            for (int s = 0; s < sizes.length; s++) {
+                List<String[][]> section = puzzles.get(s);
+                ByteBuffer data = ByteBuffer.allocate(1 << 16);
+                CRC32 crc = new CRC32();
+
+                for (String[][] puzzle : section) {
+                    if (data.remaining() < puzzleBytes(sizes[s])) {
+                        flush(channel, data, crc);
+                    }
+                    for (String[] words : puzzle) {
+                        for (String word : words) {
+                            data.put(word.getBytes(StandardCharsets.US_ASCII));
+                        }
+                    }
+                }
+                flush(channel, data, crc);
+
+                headers.put((byte) sizes[s])
+                       .put((byte) languages[s].charAt(0)).put((byte) languages[s].charAt(1))
+                       .put((byte) 0)
+                       .putInt(section.size())
+                       .putLong(offset)
+                       .putLong(crc.getValue());
+                offset += (long) section.size() * puzzleBytes(sizes[s]);
+            }
+            headers.flip();
+            channel.write(headers, 0);
+        }
+    }
+
+    /** 
+     * Writes a pack file with every puzzle of the PuzzleGenerator (sizes 5 and 7, in english
+     * and in portuguese) and prints how long it takes to open it.
+     *
+     * @param args the name of the pack file
+     * @throws IOException if the file cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        Path file = Paths.get(args[0]);
+        int[] sizes = new int[] {5, 7, 5, 7};
+        String[] languages = new String[] {EN, EN, PT, PT};
+        List<List<String[][]>> puzzles = new ArrayList<>();
+
+        for (int s = 0; s < sizes.length; s++) {
+            PuzzleGenerator generator = new PuzzleGenerator(sizes[s], languages[s].equals(EN));
+            List<String[][]> section = new ArrayList<>();
+            for (int id = 0; id < generator.nrPuzzles(); id++) {
+                section.add(new String[][] {generator.getHorizontalWords(id),
+                                            generator.getVerticalWords(id)});
+            }
+            puzzles.add(section);
+        }
+        write(file, sizes, languages, puzzles);
+
+        for (int s = 0; s < sizes.length; s++) {
+            long start = System.nanoTime();
+            PuzzlePack pack = new PuzzlePack(file, sizes[s], languages[s].equals(EN));
+            double micros = (System.nanoTime() - start) / 1e3;
+            System.out.printf("size %d %s: %d puzzles, opened in %.1f us, checksum %s%n",
+                              sizes[s], languages[s], pack.nrPuzzles(), micros,
+                              pack.verify() ? "ok" : "WRONG");
+        }
+    }
+
+    /** 
+     * @param size the number of characters of the words
+     * @return the number of bytes of each puzzle of the given size
+     */
+    private static int puzzleBytes(int size) {
+        return (size + 1) * size;
+    }
+
+    /** 
+     * Writes the contents of a buffer to a channel, adding them to a checksum, and clears it.
+     *
+     * @param channel the channel
+     * @param data    the buffer
+     * @param crc     the checksum
+     * @throws IOException if the channel cannot be written
+     */
+    private static void flush(FileChannel channel, ByteBuffer data, CRC32 crc)
+            throws IOException {
+
+        data.flip();
+        crc.update(data.duplicate());
+        while (data.hasRemaining()) {
+            channel.write(data);
+        }
+        data.clear();
+    }
+
+    /** 
+     * @param id    the number of the puzzle
+     * @param first the index of the first word to read in the puzzle
+     * @return the (size + 1) / 2 words of the puzzle starting with the given one
+     */
+    private String[] readWords(int id, int first) {
+        String[] words = new String[(this.size + 1) / 2];
+        byte[] word = new byte[this.size];
+        long at = this.offset + (long) id * puzzleBytes(this.size) + (long) first * this.size;
+
+        for (int w = 0; w < words.length; w++) {
+            this.buffer.get((int) (at + (long) w * this.size), word);
+            words[w] = new String(word, StandardCharsets.US_ASCII);
+        }
+        return words;
+    }
+}
@@ -0,0 +1,166 @@
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The objects of this class are immutable and give the puzzles of PuzzleGenerator (sizes 5
+ * and 7, in english and in portuguese), offering the same methods, but only build the
+ * puzzles of a size and language on their first use.
+ *
+ * The puzzles of each size and language are kept in a holder class of their own, which the
+ * JVM only initializes when of(...) first asks for them, so starting a session with one of
+ * them does not build the other three. The words of each puzzle are packed, with no
+ * separators, in one array of characters: its (size + 1) / 2 horizontal words followed by
+ * its (size + 1) / 2 vertical words, as in the puzzle packs of PuzzlePack.
+ */
+public final class PuzzleTables {
+
+    /**
+     * The puzzles of size 5 in english, built on the first use of this class.
+     */
+    private static final class En5 {
+        static final PuzzleTables TABLES = new PuzzleTables(5,
+            "MOWERTRENDRODEOMOTORWIELDRADIO" +
+            "VENOMREIGNSHEERVIRUSNOISEMANOR" +
+            "YUCCAAWAKENAKEDYEARNCHALKAMEND" +
+            "CLOTHARSONHOTLYCOACHONSETHANDY" +
+            "UNITEZEBRAPIXELUNZIPINBOXEMAIL" +
+            "BLESSEXILEDRYERBREADEDIFYSHEAR" +
+            "BASEDALARMEMPTYBLAZESWAMPDIMLY" +
+            "GREENEXISTDITTYGREEDEDICTNUTTY" +
+            "NASTYSTORMLANKYNASALSHOWNYUMMY" +
+            "COURTBACONCATTYCUBICUNCUTTANGY" +
+            "WHERETIGHTHYENAWITCHEAGLEEXTRA" +
+            "CLUCKISSUEFETIDCHIEFUNSETKNEAD" +
+            "BEVELALLOTTEASEBLASTVILLALATHE");
+    }
+
+    /**
+     * The puzzles of size 7 in english, built on the first use of this class.
+     */
+    private static final class En7 {
+        static final PuzzleTables TABLES = new PuzzleTables(7,
+            "SUNBEAMAIMLESSAIRFARESOLIDLYSEABASSNUMERALEMERALDMYSTERY" +
+            "DISTURBELUSIVELEGWORKDREAMERDUELLEDSMUGGLEUNIFORMBREAKER" +
+            "BURGEONLAMBINGEVASIVEEXTINCTBELIEVERAMPANTEDITIONNEGLECT");
+    }
+
+    /**
+     * The puzzles of size 5 in portuguese, built on the first use of this class.
+     */
+    private static final class Pt5 {
+        static final PuzzleTables TABLES = new PuzzleTables(5,
+            "HASTEROSNASUADOHORASSESTAEXATO" +
+            "TREVONOTARABREMTINTAESTAROUREM" +
+            "MAIORNOTASOSSEOMANTOIATESRISCO" +
+            "CABAZNATALOUSARCONTOBOTASZELAR");
+    }
+
+    /**
+     * The puzzles of size 7 in portuguese, built on the first use of this class.
+     */
+    private static final class Pt7 {
+        static final PuzzleTables TABLES = new PuzzleTables(7,
+            "ESTRELATROCADOENOLOGOACOMODAESTREIATEOLOGOELABOROABOBORA" +
+            "GUINADALATERALPARECERREABRIRGALOPARINTERNAATRACARAFLORAR");
+    }
+
+    //The number of characters of the words
+    private final int size;
+
+    //The words of the puzzles, one puzzle after the other
+    private final char[] letters;
+
+    /**
+     * @param size      the number of characters of the words of the puzzles
+     * @param inEnglish if the puzzles are in english (or in portuguese)
+     * @return the puzzles of the given size and language
+     * @requires {@code size == 5 || size == 7}
+     */
+    public static PuzzleTables of(int size, boolean inEnglish) {
+        PuzzleTables tables;
+        if (size == 5) {
+            tables = inEnglish ? En5.TABLES : Pt5.TABLES;
+        }
+        else {
+            tables = inEnglish ? En7.TABLES : Pt7.TABLES;
+        }
+        return tables;
+    }
+
+    /**
+     * Builds the puzzles of a size and language from their packed words.
+     *
+     * @param size  the number of characters of the words of the puzzles
+     * @param words the words of the puzzles, one puzzle after the other
+     */
+    private PuzzleTables(int size, String words) {
+        this.size = size;
+        this.letters = words.toCharArray();
+    }
+
+    /**
+     * @return the number of puzzles
+     */
+    public int nrPuzzles() {
+        return this.letters.length / puzzleChars();
+    }
+
+    /**
+     * @return the ids of every puzzle, in a random order
+     */
+    public int[] getRandomSequenceIds() {
+        ThreadLocalRandom r = ThreadLocalRandom.current();
+        int[] ids = new int[nrPuzzles()];
+        for (int id = 0; id < ids.length; id++) {
+            int k = r.nextInt(id + 1);
+            ids[id] = ids[k];
+            ids[k] = id;
+        }
+        return ids;
+    }
+
+    /**
+     * @param id the id of the puzzle
+     * @return the horizontal words of the puzzle
+     * @requires {@code 0 <= id && id < nrPuzzles()}
+     */
+    public String[] getHorizontalWords(int id) {
+        return words(id * puzzleChars());
+    }
+
+    /**
+     * @param id the id of the puzzle
+     * @return the vertical words of the puzzle
+     * @requires {@code 0 <= id && id < nrPuzzles()}
+     */
+    public String[] getVerticalWords(int id) {
+        return words(id * puzzleChars() + puzzleChars() / 2);
+    }
+
+    /**
+     * @param id the id of the puzzle
+     * @return the puzzle with the given id
+     * @requires {@code 0 <= id && id < nrPuzzles()}
+     */
+    public Puzzle puzzle(int id) {
+        return new Puzzle(this.size, getHorizontalWords(id), getVerticalWords(id));
+    }
+
+    /**
+     * @return the number of characters of the words of each puzzle
+     */
+    private int puzzleChars() {
+        return (this.size + 1) * this.size;
+    }
+
+    /**
+     * @param from the position of the first character of the words
+     * @return the (size + 1) / 2 words that start in the given position
+     */
+    private String[] words(int from) {
+        String[] words = new String[(this.size + 1) / 2];
+        for (int w = 0; w < words.length; w++) {
+            words[w] = new String(this.letters, from + w * this.size, this.size);
+        }
+        return words;
+    }
+}
@@ -0,0 +1,156 @@
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * The objects of this class keep the screens of the GUI (the root of a loaded fxml file and
+ * its controller) already built, so switching to a screen does not parse its fxml file and
+ * build its scene graph again every time.
+ *
+ * The screens are loaded once, in the background, when they are preloaded (Startup preloads
+ * mainMenu.fxml, waffle.fxml and finalScreen.fxml), and the same screen is then given on
+ * every switch, after the reset hook puts its controller back in the state of a screen just
+ * loaded. A screen that was not preloaded is loaded by the caller on its first switch. The
+ * time of every switch is kept in a FrameTimeCounter and logged.
+ *
+ * @param <S> the type of the screens
+ */
+public class ScreenCache<S> {
+
+    /**
+     * Loads a screen, for example with an FXMLLoader of the fxml file with the given name.
+     *
+     * @param <S> the type of the screens
+     */
+    @FunctionalInterface
+    public interface Loader<S> {
+
+        /**
+         * @param name the name of the screen
+         * @return the screen with the given name, just loaded
+         * @throws IOException if the screen cannot be loaded
+         */
+        S load(String name) throws IOException;
+    }
+
+    //Logs the time of each switch
+    private static final System.Logger LOGGER = System.getLogger(ScreenCache.class.getName());
+
+    //Loads the screens and puts them back in their initial state, respectively
+    private final Loader<S> loader;
+    private final Consumer<? super S> reset;
+
+    //The screens loaded or being loaded, by name
+    private final Map<String, CompletableFuture<S>> screens;
+
+    //The time of the switches to the screens
+    private final FrameTimeCounter switchTimes;
+
+    /**
+     * Builds an empty cache.
+     *
+     * @param loader the loader of the screens, which must be safe to call from a thread
+     *               other than the one of the GUI
+     * @param reset  the hook that puts a screen back in its initial state, called on each
+     *               switch to it, by the thread that switches
+     * @requires {@code loader != null && reset != null}
+     */
+    public ScreenCache(Loader<S> loader, Consumer<? super S> reset) {
+        this.loader = loader;
+        this.reset = reset;
+        this.screens = new ConcurrentHashMap<>();
+        this.switchTimes = new FrameTimeCounter();
+    }
+
+    /**
+     * Starts loading the given screens, one after the other, in a background thread. The
+     * screens already loaded or being loaded are not loaded again.
+     *
+     * @param names the names of the screens
+     */
+    public void preload(String... names) {
+        Map<String, CompletableFuture<S>> toLoad = new ConcurrentHashMap<>();
+        for (String name : names) {
+            CompletableFuture<S> future = new CompletableFuture<>();
+            if (this.screens.putIfAbsent(name, future) == null) {
+                toLoad.put(name, future);
+            }
+        }
+        if (!toLoad.isEmpty()) {
+            Thread.ofPlatform().daemon().name("screen-preload").start(() -> {
+                for (String name : names) {
+                    CompletableFuture<S> future = toLoad.get(name);
+                    if (future != null) {
+                        try {
+                            future.complete(this.loader.load(name));
+                        } catch (IOException | RuntimeException e) {
+                            future.completeExceptionally(e);
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Gives the screen with the given name, back in its initial state, waiting for it if it
+     * is still being preloaded and loading it if it was not preloaded (or its preload failed).
+     *
+     * @param name the name of the screen
+     * @return the screen with the given name
+     * @throws IOException if the screen cannot be loaded
+     */
+    public S switchTo(String name) throws IOException {
+        long start = System.nanoTime();
+        S screen = cached(name);
+
+        if (screen == null) {
+            screen = this.loader.load(name);
+            this.screens.put(name, CompletableFuture.completedFuture(screen));
+        }
+        this.reset.accept(screen);
+        this.switchTimes.recordSince(start);
+        LOGGER.log(System.Logger.Level.DEBUG, () -> String.format("switch to %s in %.2f ms (%s)",
+                   name, (System.nanoTime() - start) / 1e6, this.switchTimes));
+        return screen;
+    }
+
+    /**
+     * @param name the name of a screen
+     * @return true if the screen with the given name is loaded or being loaded
+     */
+    public boolean isPreloaded(String name) {
+        return this.screens.containsKey(name);
+    }
+
+    /**
+     * @return the times of the switches made so far
+     */
+    public FrameTimeCounter switchTimes() {
+        return this.switchTimes;
+    }
+
+    /**
+     * @param name the name of a screen
+     * @return the screen with the given name, waiting for its preload, or null if it was
+     *         not preloaded or its preload failed
+     */
+    private S cached(String name) {
+        CompletableFuture<S> future = this.screens.get(name);
+        S screen = null;
+
+        if (future != null) {
+            try {
+                screen = future.get();
+            } catch (ExecutionException e) {
+                this.screens.remove(name, future);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return screen;
+    }
+}
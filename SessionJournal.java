@@ -0,0 +1,479 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.ReentrantLock;
+
+/** 
+ * The objects of this class are append-only journals of the matches hosted by a server, so
+ * that they can be recovered if the process dies.
+ *
+ * Swaps, restarts and ends of matches are written as fixed records of 16 bytes, and each
+ * match is written as a compact snapshot (its solution, initial and current grids as
+ * CompactBoard longs plus the remaining swaps) when it starts and then periodically. The
+ * records are gathered in a buffer that is written to the file every few milliseconds, or
+ * when it fills up, so appending a record only copies a few bytes. Recovering replays each
+ * match from its last snapshot.
+ *
+ * File format (big-endian): the magic "WJNL" and the version (int), followed by records:
+ * - SWAP, RESTART, END: type, row1, col1, row2, col2 (bytes), 3 padding bytes, id (long);
+ * - SNAPSHOT: type, size (bytes), 2 padding bytes, remaining swaps (int), id (long), and
+ *   the longs of the solution, the initial grid and the current grid.
+ */
+public class SessionJournal implements AutoCloseable {
+
+    //The first bytes of every journal and the version of the format
+    private static final int MAGIC = 0x574A4E4C;
+    private static final int VERSION = 1;
+
+    //The types of the records
+    private static final byte SWAP = 1;
+    private static final byte RESTART = 2;
+    private static final byte END = 3;
+    private static final byte SNAPSHOT = 4;
+
+    //The number of bytes of the header and of the fixed records
+    private static final int HEADER_BYTES = 8;
+    private static final int RECORD_BYTES = 16;
+
+    //The size of the buffer and how often it is written to the file
+    private static final int BUFFER_BYTES = 1 << 16;
+    private static final long FLUSH_MILLIS = 2;
+
+    //The file of the journal
+    private final FileChannel channel;
+
+    //The records not yet written to the file
+    private final ByteBuffer buffer;
+
+    //Protects the buffer and the channel
+    private final ReentrantLock lock;
+
+    //Writes the buffer to the file periodically
+    private final Thread flusher;
+
+    //The last error writing to the file, reported to the next caller
+    private volatile IOException failure;
+
+    /** 
+     * Opens a journal to add records at its end, creating it if it does not exist, and
+     * starts writing its records to the file periodically.
+     *
+     * @param file the file of the journal
+     * @return the journal
+     * @throws IOException if the file cannot be opened or is not a journal
+     */
+    public static SessionJournal open(Path file) throws IOException {
+        SessionJournal journal = new SessionJournal(file);
+        journal.flusher.start();
+        return journal;
+    }
+
+    /** 
+     * Opens a journal to add records at its end, creating it if it does not exist. Its
+     * flusher is not started.
+     *
+     * @param file the file of the journal
+     * @throws IOException if the file cannot be opened or is not a journal
+     */
+    private SessionJournal(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                        StandardOpenOption.WRITE);
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+        this.lock = new ReentrantLock();
+
+        if (this.channel.size() == 0) {
+            this.buffer.putInt(MAGIC).putInt(VERSION);
+        }
+        else {
+            checkHeader(this.channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                                         Math.min(this.channel.size(), HEADER_BYTES)), file);
+            //a record cut by a crash is dropped so new records start at a record boundary
+            this.channel.truncate(validLength(file));
+        }
+        this.channel.position(this.channel.size());
+
+        this.flusher = Thread.ofPlatform().daemon().name("journal-flusher")
+                             .unstarted(this::flushPeriodically);
+    }
+
+    /** 
+     * Records a snapshot of a match.
+     *
+     * @param id   the id of the match
+     * @param game the match, which must not change while the snapshot is taken
+     */
+    public void snapshot(long id, WaffleGame game) {
+        int size = game.puzzle().size();
+        long[] solution = game.puzzle().solution().toLongs();
+        long[] initial = game.initialGrid().toLongs();
+        long[] current = game.currentBoard().toLongs();
+
+        this.lock.lock();
+        try {
+            reserve(RECORD_BYTES + 3 * 8 * solution.length);
+            this.buffer.put(SNAPSHOT).put((byte) size).putShort((short) 0)
+                       .putInt(game.remainingSwaps()).putLong(id);
+            for (long[] board : new long[][] {solution, initial, current}) {
+                for (long bits : board) {
+                    this.buffer.putLong(bits);
+                }
+            }
+        }
+        finally {
+            this.lock.unlock();
+        }
+    }
+
+    /** 
+     * Records a swap in a match.
+     *
+     * @param id   the id of the match
+     * @param row1 the row of the first letter swapped
+     * @param col1 the column of the first letter swapped
+     * @param row2 the row of the second letter swapped
+     * @param col2 the column of the second letter swapped
+     */
+    public void swap(long id, int row1, int col1, int row2, int col2) {
+        append(SWAP, id, row1, col1, row2, col2);
+    }
+
+    /** 
+     * Records that a match was restarted.
+     *
+     * @param id the id of the match
+     */
+    public void restart(long id) {
+        append(RESTART, id, 0, 0, 0, 0);
+    }
+
+    /** 
+     * Records that a match ended.
+     *
+     * @param id the id of the match
+     */
+    public void end(long id) {
+        append(END, id, 0, 0, 0, 0);
+    }
+
+    /** 
+     * Writes the records gathered so far to the file (without forcing them to the disk).
+     *
+     * @throws IOException if the file cannot be written
+     */
+    public void flush() throws IOException {
+        this.lock.lock();
+        try {
+            write();
+        }
+        finally {
+            this.lock.unlock();
+        }
+    }
+
+    /** 
+     * Writes the remaining records, forces them to the disk and closes the journal.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        this.flusher.interrupt();
+        try {
+            this.flusher.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        this.channel.force(true);
+        this.channel.close();
+    }
+
+    /** 
+     * Recovers the matches of a journal, replaying each one from its last snapshot.
+     *
+     * @param file the file of the journal
+     * @return the matches that had not ended, by id (empty if the file does not exist)
+     * @throws IOException if the file cannot be read or is not a journal
+     */
+    public static Map<Long, WaffleGame> recover(Path file) throws IOException {
+        Map<Long, WaffleGame> games = new HashMap<>();
+
+        if (Files.exists(file)) {
+            ByteBuffer records;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                records = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            checkHeader(records, file);
+            records.position(HEADER_BYTES);
+
+            while (records.remaining() >= RECORD_BYTES) {
+                int start = records.position();
+                byte type = records.get();
+
+                if (type == SNAPSHOT) {
+                    int size = records.get();
+                    int nrLongs = CompactBoard.nrLongs(size);
+                    if (records.remaining() < RECORD_BYTES - 2 + 3 * 8 * nrLongs) {
+                        records.position(records.limit());
+                    }
+                    else {
+                        records.getShort();
+                        int remainingSwaps = records.getInt();
+                        long id = records.getLong();
+                        CompactBoard solution = new CompactBoard(size, readLongs(records, nrLongs));
+                        CompactBoard initial = new CompactBoard(size, readLongs(records, nrLongs));
+                        CompactBoard current = new CompactBoard(size, readLongs(records, nrLongs));
+                        games.put(id, new WaffleGame(toPuzzle(solution), initial, current,
+                                                     remainingSwaps));
+                    }
+                }
+                else {
+                    int row1 = records.get();
+                    int col1 = records.get();
+                    int row2 = records.get();
+                    int col2 = records.get();
+                    records.position(start + 8);
+                    long id = records.getLong();
+                    WaffleGame game = games.get(id);
+
+                    //the swaps were counted in GameMetrics when they were made
+                    if (game != null && type == SWAP) {
+                        game.replaySwap(row1, col1, row2, col2);
+                    }
+                    else if (game != null && type == RESTART) {
+                        game.restart();
+                    }
+                    else if (game != null && type == END) {
+                        games.remove(id);
+                    }
+                }
+            }
+        }
+        return games;
+    }
+
+    /** 
+     * Rewrites a journal with only a snapshot of each of the given matches, replacing the
+     * previous file at once.
+     *
+     * @param file  the file of the journal
+     * @param games the matches, by id, which must not change while the file is written
+     * @throws IOException if the file cannot be written
+     */
+    public static void compact(Path file, Map<Long, WaffleGame> games) throws IOException {
+        Path compacted = file.resolveSibling(file.getFileName() + ".compacting");
+        Files.deleteIfExists(compacted);
+
+        try (SessionJournal journal = open(compacted)) {
+            for (Map.Entry<Long, WaffleGame> entry : games.entrySet()) {
+                journal.snapshot(entry.getKey(), entry.getValue());
+            }
+        }
+        Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING,
+                   StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** 
+     * Measures the cost of journaling swaps and of recovering the matches. Every other
+     * match ends, as on a server that has been running for long.
+     *
+     * @param args the journal file, the number of matches and the number of swaps of each
+     *             one (by default 100000 and 20)
+     * @throws IOException if the file cannot be written or read
+     */
+    public static void main(String[] args) throws IOException {
+        Path file = Paths.get(args[0]);
+        int nrGames = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+        int nrSwaps = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        PuzzleGenerator generator = new PuzzleGenerator(5, true);
+        SplittableRandom r = new SplittableRandom(1);
+        Files.deleteIfExists(file);
+
+        long swapNanos = 0;
+        try (SessionJournal journal = open(file)) {
+            for (long id = 1; id <= nrGames; id++) {
+                int puzzleId = r.nextInt(generator.nrPuzzles());
+                Puzzle puzzle = new Puzzle(5, generator.getHorizontalWords(puzzleId),
+                                           generator.getVerticalWords(puzzleId));
+                WaffleGame game = new WaffleGame(puzzle, puzzle.getShuffledGrid());
+                journal.snapshot(id, game);
+
+                for (int s = 0; s < nrSwaps && !game.isOver(); s++) {
+                    int row1 = 1 + 2 * r.nextInt(3);
+                    int col1 = 2 + 2 * r.nextInt(2);
+                    int row2 = 1 + 2 * r.nextInt(3);
+                    int col2 = 2 + 2 * r.nextInt(2);
+                    if (game.swappablePosition(row1, col1) && game.swappablePosition(row2, col2) &&
+                        (row1 != row2 || col1 != col2)) {
+
+                        long start = System.nanoTime();
+                        journal.swap(id, row1, col1, row2, col2);
+                        swapNanos += System.nanoTime() - start;
+                        game.swap(row1, col1, row2, col2);
+                    }
+                }
+                if (id % 2 == 0) {
+                    journal.end(id);
+                }
+            }
+        }
+
+        long start = System.nanoTime();
+        Map<Long, WaffleGame> games = recover(file);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("journal of %d bytes, %.0f ns per swap recorded%n", Files.size(file),
+                          swapNanos / (double) nrGames / nrSwaps);
+        System.out.printf("recovered %d matches in %.2f s%n", games.size(), seconds);
+    }
+
+    /** 
+     * Writes the records to the file every FLUSH_MILLIS until the thread is interrupted,
+     * keeping the last error to report it to the next caller.
+     */
+    private void flushPeriodically() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Thread.sleep(FLUSH_MILLIS);
+                flush();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            catch (IOException e) {
+                this.failure = e;
+            }
+        }
+    }
+
+    /** 
+     * Adds a fixed record to the journal.
+     */
+    private void append(byte type, long id, int row1, int col1, int row2, int col2) {
+        this.lock.lock();
+        try {
+            reserve(RECORD_BYTES);
+            this.buffer.put(type).put((byte) row1).put((byte) col1).put((byte) row2)
+                       .put((byte) col2).put((byte) 0).putShort((short) 0).putLong(id);
+        }
+        finally {
+            this.lock.unlock();
+        }
+    }
+
+    /** 
+     * Makes room in the buffer for a record, writing it to the file if needed.
+     *
+     * @param bytes the number of bytes of the record
+     * @throws UncheckedIOException if writing to the file failed
+     * @requires {@code this.lock.isHeldByCurrentThread()}
+     */
+    private void reserve(int bytes) {
+        IOException failed = this.failure;
+        try {
+            if (failed != null) {
+                throw failed;
+            }
+            if (this.buffer.remaining() < bytes) {
+                write();
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("cannot write the session journal", e);
+        }
+    }
+
+    /** 
+     * Writes the buffer to the file and clears it.
+     *
+     * @throws IOException if the file cannot be written
+     * @requires {@code this.lock.isHeldByCurrentThread()}
+     */
+    private void write() throws IOException {
+        this.buffer.flip();
+        while (this.buffer.hasRemaining()) {
+            this.channel.write(this.buffer);
+        }
+        this.buffer.clear();
+    }
+
+    /** 
+     * Verifies the header of a journal.
+     *
+     * @throws IOException if the header is not the one of a journal
+     */
+    private static void checkHeader(ByteBuffer header, Path file) throws IOException {
+        if (header.limit() < HEADER_BYTES || header.getInt(0) != MAGIC ||
+            header.getInt(4) != VERSION) {
+
+            throw new IOException("not a session journal: " + file);
+        }
+    }
+
+    /** 
+     * @param file the file of a journal
+     * @return the length of the journal without a record cut at its end
+     * @throws IOException if the file cannot be read
+     */
+    private static long validLength(Path file) throws IOException {
+        ByteBuffer records;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            records = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        int length = HEADER_BYTES;
+        boolean complete = true;
+
+        while (complete && records.limit() - length >= RECORD_BYTES) {
+            int recordBytes = RECORD_BYTES;
+            if (records.get(length) == SNAPSHOT) {
+                recordBytes += 3 * 8 * CompactBoard.nrLongs(records.get(length + 1));
+            }
+            complete = records.limit() - length >= recordBytes;
+            if (complete) {
+                length += recordBytes;
+            }
+        }
+        return length;
+    }
+
+    /** 
+     * @return the next longs of the buffer
+     */
+    private static long[] readLongs(ByteBuffer records, int nrLongs) {
+        long[] longs = new long[nrLongs];
+        for (int k = 0; k < nrLongs; k++) {
+            longs[k] = records.getLong();
+        }
+        return longs;
+    }
+
+    /** 
+     * @param solution the solution grid of a puzzle
+     * @return the puzzle, with the words read from the rows and columns with even indexes
+     */
+    private static Puzzle toPuzzle(CompactBoard solution) {
+        char[][] grid = solution.toGrid();
+        GridTopology topology = GridTopology.of(grid.length);
+        String[] hWords = new String[topology.nrWords()];
+        String[] vWords = new String[topology.nrWords()];
+        char[] column = new char[grid.length];
+
+        for (int k = 0; k < hWords.length; k++) {
+            hWords[k] = new String(grid[topology.line(k)]);
+            for (int i = 0; i < grid.length; i++) {
+                column[i] = grid[i][topology.line(k)];
+            }
+            vWords[k] = new String(column);
+        }
+        return new Puzzle(grid.length, hWords, vWords);
+    }
+}
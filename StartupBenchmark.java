@@ -0,0 +1,110 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Measures the startup time of the game, from the launch of a new JVM to the first board
+ * ready to be played, on the headless path (PuzzleTables, Puzzle and WaffleGame, as the
+ * server builds its boards) or on the GUI.
+ *
+ * Each run launches a new JVM and waits for a line that marks the end of the startup: the
+ * headless path prints READY as soon as its board is built, and for WaffleGUI the JVM logs
+ * the loading of the classes and the end is the loading of MainMenuController, when the
+ * first screen is shown (a board needs a click on it). The options of the JVM given to the
+ * benchmark are passed to every JVM launched, for example to use a CDS archive.
+ */
+public class StartupBenchmark {
+
+    //The line printed by the headless path when its board is ready
+    private static final String READY = "READY";
+
+    //The class loaded by the GUI when its first screen is shown
+    private static final String GUI_READY = "MainMenuController ";
+
+    /**
+     * Measures the startup time, or builds the first board of the headless path.
+     *
+     * @param args "board" to build the first board of the headless path, or else the number
+     *             of runs (10 if not given), followed by "gui" to measure WaffleGUI instead
+     *             of the headless path and by the options of the JVMs to launch
+     * @throws IOException if a JVM cannot be launched or does not get to its first board
+     * @throws InterruptedException if interrupted while waiting for a JVM
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length > 0 && args[0].equals("board")) {
+            Puzzle puzzle = PuzzleTables.of(5, true).puzzle(0);
+            WaffleGame game = new WaffleGame(puzzle, puzzle.getShuffledGrid());
+            System.out.println(READY + " " + game.remainingSwaps());
+        }
+        else {
+            int runs = args.length > 0 && args[0].matches("\\d+") ?
+                       Integer.parseInt(args[0]) : 10;
+            boolean gui = Arrays.asList(args).contains("gui");
+            List<String> command = new ArrayList<>();
+            command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+            for (String arg : args) {
+                if (arg.startsWith("-")) {
+                    command.add(arg);
+                }
+            }
+            if (gui) {
+                command.addAll(List.of("-Xlog:class+load=info:stdout", "-cp", "./:fx/*",
+                                       "WaffleGUI"));
+            }
+            else {
+                command.addAll(List.of("-cp", System.getProperty("java.class.path"),
+                                       "StartupBenchmark", "board"));
+            }
+
+            double[] millis = new double[runs];
+            for (int run = 0; run < runs; run++) {
+                millis[run] = launch(command, gui ? GUI_READY : READY);
+            }
+            Arrays.sort(millis);
+            System.out.printf("%s, %d runs: min %.1f ms, median %.1f ms, max %.1f ms%n",
+                              gui ? "WaffleGUI" : "headless", runs, millis[0],
+                              millis[runs / 2], millis[runs - 1]);
+        }
+    }
+
+    /**
+     * Launches a JVM and waits for it to print a line with the given mark, ending it then.
+     *
+     * @param command the command that launches the JVM
+     * @param mark    the text of the line that marks the end of the startup
+     * @return the time from the launch to the line with the mark, in milliseconds
+     * @throws IOException if the JVM cannot be launched or ends without the mark
+     * @throws InterruptedException if interrupted while waiting for the JVM
+     */
+    private static double launch(List<String> command, String mark)
+        throws IOException, InterruptedException {
+
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        double millis = -1;
+
+        try (BufferedReader out = new BufferedReader(
+                                      new InputStreamReader(process.getInputStream()))) {
+            String line = out.readLine();
+            while (line != null && millis < 0) {
+                if (line.contains(mark)) {
+                    millis = (System.nanoTime() - start) / 1e6;
+                }
+                else {
+                    line = out.readLine();
+                }
+            }
+        } finally {
+            process.destroy();
+            process.waitFor();
+        }
+        if (millis < 0) {
+            throw new IOException("the JVM ended before its first board: " + command);
+        }
+        return millis;
+    }
+}
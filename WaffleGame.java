@@ -1,4 +1,6 @@
 import java.lang.StringBuilder;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
 
 /** 
  * The objects of this class represent matches of the Waffle Game.
@@ -8,24 +10,87 @@ import java.lang.StringBuilder;
  */
 public class WaffleGame {
 
+    //The number of letters of the alphabet used in the words of the puzzles ('A' to 'Z')
+    private static final int ALPHABET = 26;
+
     //The words that form the puzzle matrix
     private Puzzle puzzle;
 
-    //The matrixes of characters that correspond to the puzzle and the grid, respectively
-    private char[][] puzzleGrid;
-    private char[][] grid;
+    /*The puzzle matrix (shared by every match of the puzzle, never changed) and the current
+      grid, in compact form*/
+    private CompactBoard solution;
+    private CompactBoard board;
+
+    //The classification of the positions of the grid
+    private GridTopology topology;
 
-    //The copy of the grid
-    private char[][] gridCopy;
+    //The copy of the initial grid, in compact form
+    private CompactBoard gridCopy;
 
     /*Indicates if the letter is in the correct position, or if it is not in the correct
       position but belongs to a horizontal word or vertical word, or if it does not exist
       in the words*/
     private LetterStatus status;
 
-    //The remaining number of swaps left to complete the game
+    //The number of swaps allowed in the match and the remaining number of them
+    private int maxSwaps;
     private int remainingSwaps;
 
+    /*For each horizontal (and vertical) word w, the number of times each letter of the word
+      is still missing from its correct position in the grid, at w * ALPHABET + letter (no
+      letter appears more than Puzzle.MAX_SIZE times in a word, so a byte is enough)*/
+    private byte[] missingInRow;
+    private byte[] missingInCol;
+
+    /*Bitmasks with a bit for each position of the grid (row * size + column) that is set
+      when the letter belongs to its row (or column) word but is in the wrong position,
+      following the left to right (top to bottom) order*/
+    private long[] wrongPosInRow;
+    private long[] wrongPosInCol;
+
+    /*Bitmask with a bit for each position of the grid whose clue is WRONG_POS, kept up to
+      date by swap() and restart() with the other clues, which follow from the bitmasks*/
+    private long[] wrongPosLetters;
+
+    /*Bitmask with a bit for each position of the grid (row * size + column) that is set
+      when the letter in that position is in the correct position*/
+    private long[] correctLetters;
+
+    //The number of letters in the grid and how many of them are in the correct position
+    private int nrLetters;
+    private int nrCorrectLetters;
+
+    /*The swaps made in the grid, each one packed in an int with the positions (row * size +
+      column) of the two letters in the upper and lower 16 bits (null until the first swap),
+      and the number of swaps in the log and of those that are currently made (the
+      following ones can be redone)*/
+    private int[] moves;
+    private int nrMoves;
+    private int currentMove;
+
+    //Indicates if the log starts at the initial grid, so restart() can undo every swap
+    private boolean logFromStart;
+
+    /*For each pair of letters (letter in the grid * ALPHABET + letter of the puzzle), the
+      number of positions of the grid where the first letter is instead of the second (null
+      until the first hint, as most matches never ask for one)*/
+    private int[] misplacedPairs;
+
+    /*The optimal swaps computed by the last hint and the next one of them, kept while the
+      player follows them (null if there are none)*/
+    private int[][] plan;
+    private int planStep;
+
+    /*The positions (row * size + column) whose letter or clue changed with the last swap,
+      undo, redo, jump or restart, in the order they changed, and the same positions as a
+      bitset, so each one is listed once*/
+    private short[] changed;
+    private int nrChanged;
+    private long[] changedCells;
+
+    //Indicates if the match already ended once, so it is only counted once in GameMetrics
+    private boolean ended;
+
     /** 
      * Verifies if a given grid is valid, according to the given puzzle, by verifying the following
      * conditions:
@@ -41,82 +106,72 @@ public class WaffleGame {
      * @return true if the grid is valid, according to the puzzle, or false if not
      */
     public static boolean validGrid(Puzzle puzzle, char[][] grid) {
-        boolean isValid = true;
-        char[][] puzzleGrid = puzzle.buildGrid();
+        return checkGrid(puzzle, grid) == GridStatus.VALID;
+    }
+
+    /** 
+     * Verifies the same conditions as validGrid, in a single pass over the grid, and
+     * indicates the first one that is not respected. The letters of the grid must be
+     * uppercase letters between A and Z.
+     *
+     * @param puzzle the puzzle
+     * @param grid   the grid
+     * @return GridStatus.VALID if the grid is valid, according to the puzzle, or the reason
+     *         why it is not valid
+     */
+    public static GridStatus checkGrid(Puzzle puzzle, char[][] grid) {
+        GridStatus gridStatus = GridStatus.VALID;
+
+        /*the number of times each letter appears in the puzzle minus the number of times
+          it appears in the grid*/
+        int[] letterBalance = new int[ALPHABET];
         char letter = ' ';
         int i = 0;
         int j = 0;
 
         if (puzzle == null || grid == null) {
-            isValid = false;
+            gridStatus = GridStatus.NULL_PUZZLE_OR_GRID;
         }
-        else if (grid.length != puzzleGrid.length) {
-            isValid = false;
+        else if (grid.length != puzzle.size()) {
+            gridStatus = GridStatus.WRONG_SIZE;
         }
         else {
-            while (isValid && i < grid.length) {
+            GridTopology topology = puzzle.topology();
+            for (int k = 0; k < ALPHABET; k++) {
+                letterBalance[k] = puzzle.letterCount((char) ('A' + k));
+            }
+            while (gridStatus == GridStatus.VALID && i < grid.length) {
                 if (grid[i] == null) {
-                    isValid = false;
+                    gridStatus = GridStatus.NULL_ROW;
                 }
-                else {
-                    while (isValid && j < grid[i].length) {
-                        if (grid[0].length != grid[i].length || grid.length != grid[i].length) {
-                            isValid = false;
-                        }
-                        else if (grid[i][j] != '*' && i % 2 == 1 && j % 2 == 1) {
-                            isValid = false;
-                        }
-                        else if (!(i % 2 == 1 && j % 2 == 1) && 
-                            !Character.isUpperCase(grid[i][j])) {
-
-                            isValid = false;
-                        }
-                        else {
-                            letter = puzzleGrid[i][j];
-                            if (!sameNumberOfLetters(puzzleGrid, grid, letter)) {
-                                isValid = false;
-                            }
+                else if (grid[i].length != grid.length) {
+                    gridStatus = GridStatus.NOT_SQUARE;
+                }
+                while (gridStatus == GridStatus.VALID && j < grid.length) {
+                    letter = grid[i][j];
+                    if (!topology.isLetter(i, j)) {
+                        if (letter != '*') {
+                            gridStatus = GridStatus.MISSING_STAR;
                         }
-                        j++;
                     }
-                    j = 0;
+                    else if (letter < 'A' || letter > 'Z') {
+                        gridStatus = GridStatus.INVALID_LETTER;
+                    }
+                    else {
+                        letterBalance[letter - 'A']--;
+                    }
+                    j++;
                 }
+                j = 0;
                 i++;
             }
-        }
-        return isValid;
-    }
-
-    /** 
-     * Verifies if a given letter appears the same number of times in a given puzzle
-     * and in a given grid.
-     *
-     * @param puzzle the puzzle matrix of characters
-     * @param grid   the grid matrix of characters
-     * @param letter the letter
-     * @return true if the letter appears the same number of times in the puzzle and in the grid
-     *         or false if not
-     * @requires {@code puzzle != null && grid != null}
-     */
-    private static boolean sameNumberOfLetters(char[][] puzzle, char[][] grid, char letter) {
-        boolean sameNumberOfLetters = true;
-        int counterPuzzle = 0;
-        int counterGrid = 0;
-
-        for (int i = 0; i < grid.length; i++) {
-            for (int j = 0; j < grid[i].length; j++) {
-                if (letter == puzzle[i][j]) {
-                    counterPuzzle++;
-                }
-                if (letter == grid[i][j]) {
-                    counterGrid++;
+            for (int k = 0; gridStatus == GridStatus.VALID && k < ALPHABET; k++) {
+                if (letterBalance[k] != 0) {
+                    gridStatus = GridStatus.DIFFERENT_LETTERS;
                 }
             }
         }
-        if (counterPuzzle != counterGrid) {
-            sameNumberOfLetters = false;
-        }
-        return sameNumberOfLetters;
+        return gridStatus;
     }
 
     /** 
@@ -127,18 +182,105 @@ public class WaffleGame {
      * @requires {@code validGrid(puzzle, grid)}
      */
     public WaffleGame(Puzzle puzzle, char[][] grid) {
+        this(puzzle, grid, defaultMaxSwaps(puzzle));
+    }
+
+    /** 
+     * Builds a match of the Waffle Game with the given puzzle and grid matrix, that allows
+     * the given number of swaps instead of defaultMaxSwaps(puzzle) (see GameSimulator).
+     *
+     * @param puzzle   the puzzle that contains the horizontal and vertical words
+     * @param grid     the matrix of characters
+     * @param maxSwaps the number of swaps allowed
+     * @requires {@code validGrid(puzzle, grid) && maxSwaps >= 1}
+     */
+    WaffleGame(Puzzle puzzle, char[][] grid, int maxSwaps) {
         this.puzzle = puzzle;
-        this.puzzleGrid = puzzle.buildGrid();
-        this.grid = grid;
-        this.remainingSwaps = maxSwaps();
+        this.solution = puzzle.solution();
+        this.board = new CompactBoard(grid);
+        this.topology = GridTopology.of(grid.length);
+        this.maxSwaps = maxSwaps;
+        this.remainingSwaps = maxSwaps;
         
         //gridCopy is used if the player wants to restart the same grid
-        this.gridCopy = new char[grid.length][grid.length];
-        for (int i = 0; i < grid.length; i++) {
-            for (int j = 0; j < grid[i].length; j++) {
-                this.gridCopy[i][j] = grid[i][j];
-            }
-        }
+        this.gridCopy = new CompactBoard(this.board);
+
+        int words = this.topology.nrWords();
+        int bitsetLength = (grid.length * grid.length + 63) / 64;
+        this.missingInRow = new byte[words * ALPHABET];
+        this.missingInCol = new byte[words * ALPHABET];
+        this.wrongPosInRow = new long[bitsetLength];
+        this.wrongPosInCol = new long[bitsetLength];
+        this.wrongPosLetters = new long[bitsetLength];
+        this.correctLetters = new long[bitsetLength];
+        this.nrLetters = this.topology.nrLetters();
+        this.logFromStart = true;
+        this.changed = new short[this.nrLetters];
+        this.changedCells = new long[bitsetLength];
+        rebuildClues();
+        clearChanges();
+    }
+
+    /** 
+     * Builds a match of the Waffle Game that was already being played, with the given
+     * initial grid, current grid and remaining number of swaps.
+     *
+     * @param puzzle         the puzzle that contains the horizontal and vertical words
+     * @param initialGrid    the grid the match started with, used by restart()
+     * @param grid           the current grid
+     * @param remainingSwaps the remaining number of swaps
+     * @requires {@code validGrid(puzzle, grid.toGrid()) &&
+     *            validGrid(puzzle, initialGrid.toGrid()) &&
+     *            0 <= remainingSwaps && remainingSwaps <= maxSwaps()}
+     */
+    WaffleGame(Puzzle puzzle, CompactBoard initialGrid, CompactBoard grid, int remainingSwaps) {
+        this(puzzle, grid.toGrid());
+        this.gridCopy = new CompactBoard(initialGrid);
+        this.remainingSwaps = remainingSwaps;
+        this.logFromStart = false;
+    }
+
+    /** 
+     * @return the puzzle of the match
+     */
+    Puzzle puzzle() {
+        return this.puzzle;
+    }
+
+    /** 
+     * @return a copy of the grid the match started with
+     */
+    CompactBoard initialGrid() {
+        return new CompactBoard(this.gridCopy);
+    }
+
+    /** 
+     * @return a copy of the current grid, in compact form
+     */
+    CompactBoard currentBoard() {
+        return new CompactBoard(this.board);
+    }
+
+    /**
+     * Starts a new match of the same puzzle with the given grid, as a new WaffleGame would,
+     * but reusing the arrays of this one, so a simulator that plays many matches of a
+     * puzzle does not allocate them for every match.
+     *
+     * @param grid the matrix of characters, which is copied into the current grid
+     * @requires {@code validGrid(puzzle(), grid)}
+     */
+    void newMatch(char[][] grid) {
+        this.board.copyFrom(grid);
+        this.gridCopy.copyFrom(this.board);
+        this.remainingSwaps = maxSwaps();
+        this.nrMoves = 0;
+        this.currentMove = 0;
+        this.logFromStart = true;
+        this.plan = null;
+        this.ended = false;
+        rebuildClues();
+        clearChanges();
+        GameMetrics.get().recordGameStarted();
     }
 
     /** 
@@ -150,9 +292,9 @@ public class WaffleGame {
      * @return true if the position is valid or false if not
      */
     public boolean validPosition(int row, int col) {
-        return (1 <= row && row <= this.puzzleGrid.length && 
-                1 <= col && col <= this.puzzleGrid.length &&
-                !(row % 2 == 0 && col % 2 == 0));
+        return (1 <= row && row <= this.topology.size() && 
+                1 <= col && col <= this.topology.size() &&
+                this.topology.isLetter(row - 1, col - 1));
     }
 
     /** 
@@ -166,148 +308,163 @@ public class WaffleGame {
      */
     public LetterStatus clue(int row, int col) {
 
-        if (matchingLetters()[row - 1][col - 1] && this.grid[row - 1][col - 1] != '*') {
-            status = LetterStatus.CORRECT_POS;
-        }
-        else if (((row % 2 == 1 && letterInRowWrongPos(row, col)) ||
-                  (col % 2 == 1 && letterInColWrongPos(row, col))) && 
-                   this.grid[row - 1][col - 1] != '*') {
-            
-            status = LetterStatus.WRONG_POS;
-        }
-        else if (this.grid[row - 1][col - 1] != '*') {
-            status = LetterStatus.INEXISTENT;
+        if (this.topology.isLetter(row - 1, col - 1)) {
+            status = clueAt(row - 1, col - 1);
         }
         return status;
     }
 
-    /**
-     * Returns a matrix with the dimensions of grid that indicates for each letter in grid if
-     * it is in the right position, according to the puzzle.
+    /** 
+     * @param i the index of the row of a letter
+     * @param j the index of the column of the letter
+     * @return the status of the letter, as given by the bitmasks of the clues
+     * @requires {@code this.topology.isLetter(i, j)}
+     */
+    private LetterStatus clueAt(int i, int j) {
+        int cell = i * this.topology.size() + j;
+        return isCorrect(i, j) ? LetterStatus.CORRECT_POS :
+               isSet(this.wrongPosLetters, cell) ? LetterStatus.WRONG_POS :
+                                                   LetterStatus.INEXISTENT;
+    }
+
+    /** 
+     * @param i the index of the row of a letter
+     * @param j the index of the column of the letter
+     * @return the letter in that position of the grid
+     * @requires {@code this.topology.isLetter(i, j)}
+     */
+    private char letter(int i, int j) {
+        return this.board.letter(this.topology.letterIndex(i, j));
+    }
+
+    /** 
+     * @param i the index of the row of a letter
+     * @param j the index of the column of the letter
+     * @return the letter of the puzzle in that position
+     * @requires {@code this.topology.isLetter(i, j)}
+     */
+    private char correctLetter(int i, int j) {
+        return this.solution.letter(this.topology.letterIndex(i, j));
+    }
+
+    /** 
+     * @param row the row
+     * @param col the column
+     * @return the letter in the given position of the grid
+     * @requires {@code validPosition(row, col)}
+     */
+    public char letterAt(int row, int col) {
+        return letter(row - 1, col - 1);
+    }
+
+    /** 
+     * Writes the status of every letter of the grid in a given matrix, which can be reused
+     * between calls. The positions with a * are set to null.
      *
-     * @return a matrix with true if the letter in grid is in the right position and/or false
-     *         if the letter is in the wrong position, according to the puzzle
+     * @param clues the matrix where the statuses are written
+     * @requires {@code clues != null && clues.length == getCurrentGrid().length &&
+     *            each array of clues has the same length as clues}
+     * @ensures {@code clues[row - 1][col - 1] == clue(row, col) for every valid position}
      */
-    private boolean[][] matchingLetters() {
-        boolean [][] matchingLetters = new boolean[this.grid.length][this.grid.length];
-        for (int i = 0; i < this.grid.length; i++) {
-            for (int j = 0; j < this.grid[i].length; j++) {
-                if (this.puzzleGrid[i][j] == this.grid[i][j]) {
-                    matchingLetters[i][j] = true;
-                }
-                else {
-                    matchingLetters[i][j] = false;
-                }
+    public void clueAll(LetterStatus[][] clues) {
+        GameEvents.ClueEvaluation event = new GameEvents.ClueEvaluation();
+        event.begin();
+        for (int i = 0; i < clues.length; i++) {
+            for (int j = 0; j < clues.length; j++) {
+                clues[i][j] = this.topology.isLetter(i, j) ? clueAt(i, j) : null;
             }
         }
-        return matchingLetters;
+        if (event.shouldCommit()) {
+            event.size = clues.length;
+            event.puzzleId = this.puzzle.fingerprint();
+            event.commit();
+        }
     }
 
-    /**
-     * Verifies if a letter of a grid is valid in its column but is in the wrong position,
-     * according to the puzzle.
+    /** 
+     * The positions whose letter or clue changed with the last swap, undo, redo, jumpToMove
+     * or restart, which are the only ones that have to be repainted after it. After a jump
+     * over several swaps (restart can undo them too), a position that changed and came back
+     * can also be included.
      *
-     * @param row    the row of the letter
-     * @param col    the column of the letter
-     * @return true if the letter is in the right column, according to the puzzle, but
-     *         is in the wrong position (if there are more than one occurrence of the letter
-     *         in the column of the grid, the letters will be validated from top to bottom)
-     *         or false if not
-     * @requires {@code validPosition(row, col) && col % 2 != 0}
+     * @return the number of positions changed
      */
-    private boolean letterInColWrongPos(int row, int col) {
-        boolean letterInColWrongPos = false;
-        char letter = this.grid[row - 1][col - 1];
+    public int nrChangedPositions() {
+        return this.nrChanged;
+    }
 
-        String puzzleWord = " ";
-        String gridWord = " ";
-        String incorrectLetterPos = " ";
+    /** 
+     * @param k the number of a position changed, in the order they changed
+     * @return the row of the position
+     * @requires {@code 0 <= k && k < nrChangedPositions()}
+     */
+    public int changedRow(int k) {
+        return this.changed[k] / this.topology.size() + 1;
+    }
 
-        StringBuilder sbPuzzle = new StringBuilder();
-        StringBuilder sbGrid = new StringBuilder();
-        StringBuilder sbIncorrectPos = new StringBuilder();
+    /** 
+     * @param k the number of a position changed, in the order they changed
+     * @return the column of the position
+     * @requires {@code 0 <= k && k < nrChangedPositions()}
+     */
+    public int changedCol(int k) {
+        return this.changed[k] % this.topology.size() + 1;
+    }
 
-        int rowCounter = 0;
-        
-        int letterAppearencesInPuzzle = 0;
-            /*the number of times the specified letter (or an equal one) appears in
-              the specified column of the puzzle*/
-        int letterAppearencesInGrid = 0;
-            /*the number of times the specified letter (or an equal one) appears in
-              the specified column of the grid*/
-        int correctLetterAppearences = 0;
-            /*the number of times the specified letter (or an equal one) is correct,
-              in the specified column of the grid*/
-        int remainingLetterAppearences = 0;
-
-        /*inicializing the strings that correspond to the specified column 
-          in the puzzle and in the grid*/
-        for (int i = 0; i < this.puzzleGrid.length; i++) {
-            sbPuzzle = sbPuzzle.append(this.puzzleGrid[i][col - 1]);
-            sbGrid = sbGrid.append(this.grid[i][col - 1]);
-        }
-        puzzleWord = sbPuzzle.toString();
-        gridWord = sbGrid.toString();
-
-        /*Will only enter here if the specified letter is not already in the correct position*/
-        if (!matchingLetters()[row - 1][col - 1]) {
-            while (!letterInColWrongPos && rowCounter < this.puzzleGrid.length) {
-                letterInColWrongPos = letterInColWrongPos || 
-                    letter == puzzleWord.charAt(rowCounter);
-                    
-                rowCounter++;
-            }
-            if (letterInColWrongPos) {
+    /**
+     * Verifies if the letter in the given position of the grid is in the right position,
+     * according to the puzzle.
+     *
+     * @param i the index of the row of the letter
+     * @param j the index of the column of the letter
+     * @return true if the letter is in the right position or false if not
+     */
+    private boolean isCorrect(int i, int j) {
+        return isSet(this.correctLetters, i * this.topology.size() + j);
+    }
 
-                for (int i = 0; i < this.grid.length; i++) {
+    /** 
+     * @param bits a bitmask of the positions of the grid
+     * @param cell a position of the grid (row * size + column)
+     * @return true if the bit of the position is set or false if not
+     */
+    private static boolean isSet(long[] bits, int cell) {
+        return (bits[cell >>> 6] & (1L << cell)) != 0;
+    }
 
-                    if (puzzleWord.charAt(i) == letter) {
-                        letterAppearencesInPuzzle++;
-                    }
-                    if (gridWord.charAt(i) == letter) {
-                        letterAppearencesInGrid++;
-                        if (!matchingLetters()[i][col - 1]) {
-                            sbIncorrectPos = sbIncorrectPos.append(i);
-                        }
-                    }
-                    if (gridWord.charAt(i) == letter &&
-                        matchingLetters()[i][col - 1]) {
-                        
-                        correctLetterAppearences++;
-                    }
+    /** 
+     * @param bits  a bitmask of the positions of the grid
+     * @param cell  a position of the grid (row * size + column)
+     * @param value the new value of the bit of the position
+     */
+    private static void set(long[] bits, int cell, boolean value) {
+        if (value) {
+            bits[cell >>> 6] |= 1L << cell;
+        }
+        else {
+            bits[cell >>> 6] &= ~(1L << cell);
+        }
+    }
 
-                }
-                incorrectLetterPos = sbIncorrectPos.toString();
-
-                remainingLetterAppearences = letterAppearencesInPuzzle - 
-                        correctLetterAppearences;
-                
-                /*If the number of correct letters equal to the specified letter in the
-                 col of the grid is already the same as the number of letters equal to the
-                 specified letter in the col of the puzzle, then if there are still more letters
-                 in the grid, those will change the boolean value to false.*/
-                if (remainingLetterAppearences == 0 && incorrectLetterPos.length() > 0) {
-                    letterInColWrongPos = false;
-                }
-                /*If there are more letters equal to the specified letter in the col of the grid
-                 than there are in the col of the puzzle then some letters of the col of the
-                 grid are true and others are false. This will be evaluated from top to bottom.
-                 From the top until we reach the required ammount of missing letters
-                 (remainingLetterAppearences): if the specified letter is in that interval,
-                 the boolean value remains true, if not then it is false.*/
-                else if (letterAppearencesInGrid > letterAppearencesInPuzzle) {
-                    for (int i = 0; i < incorrectLetterPos.length(); i++) {
-                        if (i + 1 > remainingLetterAppearences &&
-                            Integer.parseInt(String.valueOf(incorrectLetterPos.charAt(i)))
-                                 == row - 1) {
-                                    
-                            letterInColWrongPos = false;
-                        }
-                    }
-                }
-            }
+    /**
+     * Marks the letter in the given position of the grid as being in the right position
+     * or not, updating the number of correct letters and the missing letters of its words.
+     *
+     * @param i       the index of the row of the letter
+     * @param j       the index of the column of the letter
+     * @param correct if the letter is now in the right position
+     * @requires {@code isCorrect(i, j) != correct}
+     */
+    private void setCorrect(int i, int j, boolean correct) {
+        set(this.correctLetters, i * this.topology.size() + j, correct);
+        if (correct) {
+            this.nrCorrectLetters++;
+            countMissing(i, j, -1);
+        }
+        else {
+            this.nrCorrectLetters--;
+            countMissing(i, j, 1);
         }
-        return letterInColWrongPos;    
     }
 
     /**
@@ -323,92 +480,235 @@ public class WaffleGame {
      * @requires {@code validPosition(row, col) && row % 2 != 0}
      */
     public boolean letterInRowWrongPos(int row, int col) {
-        boolean letterInRowWrongPos = false;
-        char letter = grid[row - 1][col - 1];
-
-        String puzzleWord = " ";
-        String gridWord = " ";
-        String incorrectLetterPos = " ";
-
-        StringBuilder sbIncorrectPos = new StringBuilder();
-
-        /*inicializing the strings that correspond to the specified row 
-          in the puzzle and in the grid*/
-        puzzleWord = String.copyValueOf(this.puzzleGrid[row - 1]);
-        gridWord = String.copyValueOf(this.grid[row - 1]);
-
-        int colCounter = 0;
-
-        int correctLetterAppearences = 0;
-            /*the number of times the specified letter (or an equal one) appears in
-              the specified row of the puzzle*/
-        int letterAppearencesInPuzzle = 0;
-            /*the number of times the specified letter (or an equal one) appears in
-              the specified row of the grid*/
-        int letterAppearencesInGrid = 0;
-            /*the number of times the specified letter (or an equal one) is correct,
-              in the specified row of the grid*/
-        int remainingLetterAppearences = 0;
-
-        /*Will only enter here if the specified letter is not already in the correct position*/
-        if (!matchingLetters()[row - 1][col - 1]) {
-            while (!letterInRowWrongPos && colCounter < this.puzzleGrid.length) {
-                letterInRowWrongPos = letterInRowWrongPos || 
-                    letter == puzzleWord.charAt(colCounter);
-                    
-                colCounter++;
+        return isSet(this.wrongPosInRow, (row - 1) * this.topology.size() + col - 1);
+    }
+
+    /**
+     * Recalculates, from scratch, the number of missing letters of every word and the
+     * status of every letter of the grid.
+     */
+    private void rebuildClues() {
+        GameEvents.ClueEvaluation event = new GameEvents.ClueEvaluation();
+        event.begin();
+        Arrays.fill(this.missingInRow, (byte) 0);
+        Arrays.fill(this.missingInCol, (byte) 0);
+        Arrays.fill(this.correctLetters, 0);
+        if (this.misplacedPairs != null) {
+            Arrays.fill(this.misplacedPairs, 0);
+        }
+        this.nrCorrectLetters = 0;
+
+        int size = this.topology.size();
+        for (int k = 0; k < this.nrLetters; k++) {
+            int cell = this.topology.letterCell(k);
+            int i = cell / size;
+            int j = cell % size;
+            if (this.board.letter(k) == this.solution.letter(k)) {
+                set(this.correctLetters, cell, true);
+                this.nrCorrectLetters++;
+            }
+            else {
+                countMissing(i, j, 1);
+                countMisplaced(i, j, 1);
             }
-            if (letterInRowWrongPos) {
+        }
+        for (int w = 0; w < this.topology.nrWords(); w++) {
+            updateRow(w);
+            updateCol(w);
+        }
+        for (int k = 0; k < this.nrLetters; k++) {
+            int cell = this.topology.letterCell(k);
+            updateClue(cell / size, cell % size);
+        }
+        if (event.shouldCommit()) {
+            event.size = size;
+            event.puzzleId = this.puzzle.fingerprint();
+            event.commit();
+        }
+    }
 
-                for (int j = 0; j < this.grid.length; j++) {
+    /**
+     * Adds a given amount to the number of times the letter of the puzzle in the given
+     * position is missing from the words that contain that position.
+     *
+     * @param i      the index of the row of the position
+     * @param j      the index of the column of the position
+     * @param amount the amount to add (1 or -1)
+     * @requires {@code this.topology.isLetter(i, j)}
+     */
+    private void countMissing(int i, int j, int amount) {
+        int letter = correctLetter(i, j) - 'A';
+        int row = this.topology.rowWord(i, j);
+        int col = this.topology.colWord(i, j);
 
-                    if (puzzleWord.charAt(j) == letter) {
-                        letterAppearencesInPuzzle++;
-                    }
-                    if (gridWord.charAt(j) == letter) {
-                        letterAppearencesInGrid++;
-                        if (!matchingLetters()[row - 1][j]) {
-                            sbIncorrectPos = sbIncorrectPos.append(j);
-                        }
-                    }
-                    if (gridWord.charAt(j) == letter &&
-                        matchingLetters()[row - 1][j]) {
-                        
-                        correctLetterAppearences++;
-                    }
+        if (row >= 0) {
+            this.missingInRow[row * ALPHABET + letter] += (byte) amount;
+        }
+        if (col >= 0) {
+            this.missingInCol[col * ALPHABET + letter] += (byte) amount;
+        }
+    }
 
-                }
-                incorrectLetterPos = sbIncorrectPos.toString();
-
-                remainingLetterAppearences = letterAppearencesInPuzzle - 
-                        correctLetterAppearences;
-                
-                /*If the number of correct letters equal to the specified letter in the
-                 row of the grid is already the same as the number of letters equal to the
-                 specified letter in the row of the puzzle, then if there are still more letters
-                 in the grid, those will change the boolean value to false.*/
-                if (remainingLetterAppearences == 0 && incorrectLetterPos.length() > 0) {
-                    letterInRowWrongPos = false;
-                }
-                /*If there are more letters equal to the specified letter in the row of the grid
-                 than there are in the row of the puzzle then some letters of the row of the
-                 grid are true and others are false. This will be evaluated from left to right.
-                 From the left until we reach the required ammount of missing letters
-                 (remainingLetterAppearences): if the specified letter is in that interval,
-                 the boolean value remains true, if not then it is false.*/
-                else if (letterAppearencesInGrid > letterAppearencesInPuzzle) {
-                    for (int j = 0; j < incorrectLetterPos.length(); j++) {
-                        if (j + 1 > remainingLetterAppearences &&
-                            Integer.parseInt(String.valueOf(incorrectLetterPos.charAt(j)))
-                                 == col - 1) {
-                                    
-                            letterInRowWrongPos = false;
-                        }
-                    }
-                }
+    /**
+     * Recalculates which letters of a horizontal word of the grid are in the wrong position.
+     * Multiple occurrences of the same letter are validated from left to right.
+     *
+     * @param w the number of the horizontal word
+     */
+    private void updateRow(int w) {
+        int size = this.topology.size();
+        int i = this.topology.line(w);
+        int word = w * ALPHABET;
+
+        //the missing letters are taken as they are matched and given back at the end
+        for (int j = 0; j < size; j++) {
+            int letter = word + letter(i, j) - 'A';
+            boolean wrongPos = !isCorrect(i, j) && this.missingInRow[letter] > 0;
+            if (wrongPos) {
+                this.missingInRow[letter]--;
+            }
+            set(this.wrongPosInRow, i * size + j, wrongPos);
+        }
+        for (int j = 0; j < size; j++) {
+            if (isSet(this.wrongPosInRow, i * size + j)) {
+                this.missingInRow[word + letter(i, j) - 'A']++;
+            }
+        }
+    }
+
+    /**
+     * Recalculates which letters of a vertical word of the grid are in the wrong position.
+     * Multiple occurrences of the same letter are validated from top to bottom.
+     *
+     * @param w the number of the vertical word
+     */
+    private void updateCol(int w) {
+        int size = this.topology.size();
+        int j = this.topology.line(w);
+        int word = w * ALPHABET;
+
+        //the missing letters are taken as they are matched and given back at the end
+        for (int i = 0; i < size; i++) {
+            int letter = word + letter(i, j) - 'A';
+            boolean wrongPos = !isCorrect(i, j) && this.missingInCol[letter] > 0;
+            if (wrongPos) {
+                this.missingInCol[letter]--;
             }
+            set(this.wrongPosInCol, i * size + j, wrongPos);
+        }
+        for (int i = 0; i < size; i++) {
+            if (isSet(this.wrongPosInCol, i * size + j)) {
+                this.missingInCol[word + letter(i, j) - 'A']++;
+            }
+        }
+    }
+
+    /**
+     * Recalculates if the letter in the given position of the grid is in the wrong position.
+     * A letter only enters or leaves its correct position when it is swapped, which marks it
+     * as changed, so only the WRONG_POS clues are compared here.
+     *
+     * @param i the index of the row of the letter
+     * @param j the index of the column of the letter
+     * @requires {@code this.topology.isLetter(i, j)}
+     */
+    private void updateClue(int i, int j) {
+        int cell = i * this.topology.size() + j;
+        boolean wrongPos = !isCorrect(i, j) && (isSet(this.wrongPosInRow, cell) ||
+                                                isSet(this.wrongPosInCol, cell));
+        if (isSet(this.wrongPosLetters, cell) != wrongPos) {
+            set(this.wrongPosLetters, cell, wrongPos);
+            markChanged(i, j);
+        }
+    }
+
+    /**
+     * Adds a position of the grid to the positions changed, if it is not there yet.
+     *
+     * @param i the index of the row of the position
+     * @param j the index of the column of the position
+     */
+    private void markChanged(int i, int j) {
+        int cell = i * this.topology.size() + j;
+        if (!isSet(this.changedCells, cell)) {
+            set(this.changedCells, cell, true);
+            this.changed[this.nrChanged] = (short) cell;
+            this.nrChanged++;
+        }
+    }
+
+    /**
+     * Empties the positions changed, before a new change of the grid.
+     */
+    private void clearChanges() {
+        for (int k = 0; k < this.nrChanged; k++) {
+            set(this.changedCells, this.changed[k], false);
+        }
+        this.nrChanged = 0;
+    }
+
+    /**
+     * Updates the words of two swapped positions of the grid and then the clues of their
+     * rows and columns, which include the positions where they cross other words. The words
+     * are all recalculated first, so each clue changes at most once.
+     *
+     * @param i1 the index of the row of the first position
+     * @param j1 the index of the column of the first position
+     * @param i2 the index of the row of the second position
+     * @param j2 the index of the column of the second position
+     */
+    private void updateLines(int i1, int j1, int i2, int j2) {
+        int row1 = this.topology.rowWord(i1, j1);
+        int col1 = this.topology.colWord(i1, j1);
+        int row2 = this.topology.rowWord(i2, j2);
+        int col2 = this.topology.colWord(i2, j2);
+
+        if (row1 >= 0) {
+            updateRow(row1);
+        }
+        if (col1 >= 0) {
+            updateCol(col1);
+        }
+        if (row2 >= 0 && row2 != row1) {
+            updateRow(row2);
+        }
+        if (col2 >= 0 && col2 != col1) {
+            updateCol(col2);
+        }
+        if (row1 >= 0) {
+            updateRowClues(i1);
+        }
+        if (col1 >= 0) {
+            updateColClues(j1);
+        }
+        if (row2 >= 0 && row2 != row1) {
+            updateRowClues(i2);
+        }
+        if (col2 >= 0 && col2 != col1) {
+            updateColClues(j2);
+        }
+    }
+
+    /**
+     * Updates the clues of a row of the grid.
+     *
+     * @param i the index of the row
+     */
+    private void updateRowClues(int i) {
+        for (int k = 0; k < this.topology.size(); k++) {
+            updateClue(i, k);
+        }
+    }
+
+    /**
+     * Updates the clues of a column of the grid.
+     *
+     * @param j the index of the column
+     */
+    private void updateColClues(int j) {
+        for (int k = 0; k < this.topology.size(); k++) {
+            updateClue(k, j);
         }
-        return letterInRowWrongPos;
     }
 
     /**
@@ -428,7 +728,7 @@ public class WaffleGame {
         if (!validPosition(row, col)) {
             swappablePosition = false;
         }
-        else if (matchingLetters()[row - 1][col - 1]) {
+        else if (isCorrect(row - 1, col - 1)) {
             swappablePosition = false;
         }
         return swappablePosition;
@@ -436,7 +736,8 @@ public class WaffleGame {
 
     /**
      * Swaps 2 letters of a grid and, if those letters are different, updates the remaining
-     * number of swaps.
+     * number of swaps. The swap is added to the log of swaps, replacing the ones that could
+     * be redone, and counted in GameMetrics, as well as the end of the match it may bring.
      * 
      * @param row1 the row of the first letter to be swapped
      * @param col1 the column of the first letter to be swapped
@@ -447,21 +748,378 @@ public class WaffleGame {
      *            (row1 != row2 || col1 != col2)}
      */
     public void swap(int row1, int col1, int row2, int col2) {
-        char toSwap = this.grid[row1 - 1][col1 - 1];
-        this.grid[row1 - 1][col1 - 1] = this.grid[row2 - 1][col2 - 1];
-        this.grid[row2 - 1][col2 - 1] = toSwap;
+        GameEvents.Swap event = new GameEvents.Swap();
+        event.begin();
+        logSwap(row1, col1, row2, col2);
 
-        if (this.grid[row1 - 1][col1 - 1] != this.grid[row2 - 1][col2 - 1]) {
+        GameMetrics metrics = GameMetrics.get();
+        metrics.recordSwap();
+        boolean swapped;
+        if (ThreadLocalRandom.current().nextInt(GameMetrics.SAMPLING) == 0) {
+            long start = System.nanoTime();
+            swapped = exchange(row1 - 1, col1 - 1, row2 - 1, col2 - 1);
+            metrics.recordClueUpdate(System.nanoTime() - start);
+        }
+        else {
+            swapped = exchange(row1 - 1, col1 - 1, row2 - 1, col2 - 1);
+        }
+        if (swapped) {
             this.remainingSwaps--;
         }
+        if (event.shouldCommit()) {
+            event.size = this.topology.size();
+            event.puzzleId = this.puzzle.fingerprint();
+            event.remainingSwaps = this.remainingSwaps;
+            event.commit();
+        }
+        if (!this.ended && isOver()) {
+            this.ended = true;
+            metrics.recordGameEnded(puzzleFound(), this.remainingSwaps);
+        }
+    }
+
+    /**
+     * Makes again a swap of a match that was already being played, as swap(...) does, but
+     * without counting it in GameMetrics nor recording a GameEvents.Swap event, since that
+     * was done when the player made it (see SessionJournal.recover).
+     * 
+     * @param row1 the row of the first letter to be swapped
+     * @param col1 the column of the first letter to be swapped
+     * @param row2 the row of the second letter to be swapped
+     * @param col2 the column of the second letter to be swapped
+     * @requires {@code swappablePosition(row1, col1) &&
+     *            swappablePosition(row2, col2) &&
+     *            (row1 != row2 || col1 != col2)}
+     */
+    void replaySwap(int row1, int col1, int row2, int col2) {
+        logSwap(row1, col1, row2, col2);
+        if (exchange(row1 - 1, col1 - 1, row2 - 1, col2 - 1)) {
+            this.remainingSwaps--;
+        }
+        //the end of the match, if this swap ended it, was counted when it was made
+        this.ended = isOver();
+    }
+
+    /**
+     * Adds a swap to the log of swaps, replacing the ones that could be redone, and empties
+     * the positions changed, before the swap is made.
+     *
+     * @param row1 the row of the first letter to be swapped
+     * @param col1 the column of the first letter to be swapped
+     * @param row2 the row of the second letter to be swapped
+     * @param col2 the column of the second letter to be swapped
+     */
+    private void logSwap(int row1, int col1, int row2, int col2) {
+        if (this.moves == null) {
+            this.moves = new int[Math.max(16, 2 * maxSwaps())];
+        }
+        else if (this.currentMove == this.moves.length) {
+            this.moves = Arrays.copyOf(this.moves, 2 * this.moves.length);
+        }
+        int size = this.topology.size();
+        this.moves[this.currentMove] = ((row1 - 1) * size + col1 - 1) << 16 |
+                                       ((row2 - 1) * size + col2 - 1);
+        this.currentMove++;
+        //the swaps that could be redone are replaced by this one
+        this.nrMoves = this.currentMove;
+        followPlan(row1, col1, row2, col2);
+        clearChanges();
+    }
+
+    /**
+     * Undoes the last swap made, giving back the swap it cost.
+     *
+     * @requires {@code canUndo()}
+     */
+    public void undo() {
+        this.plan = null;
+        clearChanges();
+        undoMove();
+    }
+
+    /**
+     * Makes again the last swap undone.
+     *
+     * @requires {@code canRedo()}
+     */
+    public void redo() {
+        this.plan = null;
+        clearChanges();
+        redoMove();
+    }
+
+    /** 
+     * @return true if there is a swap that can be undone or false if not
+     */
+    public boolean canUndo() {
+        return this.currentMove > 0;
+    }
+
+    /** 
+     * @return true if there is an undone swap that can be made again or false if not
+     */
+    public boolean canRedo() {
+        return this.currentMove < this.nrMoves;
+    }
+
+    /** 
+     * @return the number of swaps currently made in the log of swaps
+     */
+    public int currentMove() {
+        return this.currentMove;
     }
 
     /** 
-     * @return the maximum ammount of swaps that can be done in the grid which is the number
-     *         of swaps that takes to create the grid + 5
+     * @return the number of swaps in the log, including the ones that can be redone
+     */
+    public int nrMoves() {
+        return this.nrMoves;
+    }
+
+    /**
+     * Undoes or redoes swaps until the given number of swaps of the log are made.
+     *
+     * @param move the number of swaps of the log to be made
+     * @requires {@code 0 <= move && move <= nrMoves()}
+     */
+    public void jumpToMove(int move) {
+        this.plan = null;
+        clearChanges();
+        while (this.currentMove > move) {
+            undoMove();
+        }
+        while (this.currentMove < move) {
+            redoMove();
+        }
+    }
+
+    /**
+     * Undoes the last swap made, giving back the swap it cost, without emptying the
+     * positions changed.
+     *
+     * @requires {@code canUndo()}
+     */
+    private void undoMove() {
+        this.currentMove--;
+        if (exchangeMove(this.moves[this.currentMove])) {
+            this.remainingSwaps++;
+        }
+    }
+
+    /**
+     * Makes again the last swap undone, without emptying the positions changed.
+     *
+     * @requires {@code canRedo()}
+     */
+    private void redoMove() {
+        if (exchangeMove(this.moves[this.currentMove])) {
+            this.remainingSwaps--;
+        }
+        this.currentMove++;
+    }
+
+    /**
+     * Swaps the letters of a move of the log, without changing the log.
+     *
+     * @param move the two positions packed in an int
+     * @return true if the letters are different or false if not
+     */
+    private boolean exchangeMove(int move) {
+        int size = this.topology.size();
+        int cell1 = move >>> 16;
+        int cell2 = move & 0xFFFF;
+        return exchange(cell1 / size, cell1 % size, cell2 / size, cell2 % size);
+    }
+
+    /**
+     * Swaps 2 letters of the grid and updates the clues.
+     *
+     * @param i1 the index of the row of the first letter
+     * @param j1 the index of the column of the first letter
+     * @param i2 the index of the row of the second letter
+     * @param j2 the index of the column of the second letter
+     * @return true if the letters are different or false if not
+     */
+    private boolean exchange(int i1, int j1, int i2, int j2) {
+        //the letters that leave their correct position become missing from their words
+        if (isCorrect(i1, j1)) {
+            setCorrect(i1, j1, false);
+        }
+        else {
+            countMisplaced(i1, j1, -1);
+        }
+        if (isCorrect(i2, j2)) {
+            setCorrect(i2, j2, false);
+        }
+        else {
+            countMisplaced(i2, j2, -1);
+        }
+
+        this.board.swapLetters(this.topology.letterIndex(i1, j1),
+                               this.topology.letterIndex(i2, j2));
+        boolean different = letter(i1, j1) != letter(i2, j2);
+        if (different) {
+            markChanged(i1, j1);
+            markChanged(i2, j2);
+        }
+
+        //the letters that reach their correct position are no longer missing
+        if (!isCorrect(i1, j1) && letter(i1, j1) == correctLetter(i1, j1)) {
+            setCorrect(i1, j1, true);
+        }
+        else if (!isCorrect(i1, j1)) {
+            countMisplaced(i1, j1, 1);
+        }
+        if (!isCorrect(i2, j2) && letter(i2, j2) == correctLetter(i2, j2)) {
+            setCorrect(i2, j2, true);
+        }
+        else if (!isCorrect(i2, j2)) {
+            countMisplaced(i2, j2, 1);
+        }
+        updateLines(i1, j1, i2, j2);
+        return different;
+    }
+
+    /**
+     * Finds the swap that most reduces the number of swaps still needed to find the puzzle:
+     * one that puts two letters in their correct positions if there is one, or else the next
+     * swap of an optimal solution of the grid (see WaffleSolver). That solution is computed
+     * once and kept while the player follows it, so the following hints cost a lookup.
+     *
+     * @return the swap as {row1, col1, row2, col2}, as in swap(...), or null if the puzzle
+     *         was found
+     */
+    public int[] hint() {
+        int[] hint = null;
+
+        if (!puzzleFound()) {
+            if (this.misplacedPairs == null) {
+                countAllMisplaced();
+            }
+            hint = twoLetterSwap();
+            if (hint == null) {
+                if (this.plan == null) {
+                    this.plan = new WaffleSolver(this.puzzle, this.board.toGrid()).getSwaps();
+                    this.planStep = 0;
+                }
+                hint = this.plan[this.planStep].clone();
+            }
+        }
+        return hint;
+    }
+
+    /**
+     * Counts the pairs of letters of every position of the grid that is not in its correct
+     * position, in a new misplacedPairs, which swap() keeps up to date from then on.
+     */
+    private void countAllMisplaced() {
+        this.misplacedPairs = new int[ALPHABET * ALPHABET];
+        for (int k = 0; k < this.nrLetters; k++) {
+            int cell = this.topology.letterCell(k);
+            int i = cell / this.topology.size();
+            int j = cell % this.topology.size();
+            if (!isCorrect(i, j)) {
+                countMisplaced(i, j, 1);
+            }
+        }
+    }
+
+    /**
+     * Looks for two positions of the grid that each have the letter that belongs to the
+     * other one.
+     *
+     * @return the swap of those positions as {row1, col1, row2, col2}, or null if there are
+     *         none
+     */
+    private int[] twoLetterSwap() {
+        int size = this.topology.size();
+        int[] swap = null;
+        int first = -1;
+
+        for (int k = 0; first < 0 && k < this.nrLetters; k++) {
+            char letter = this.board.letter(k);
+            char correct = this.solution.letter(k);
+            if (letter != correct && this.misplacedPairs[pair(correct, letter)] > 0) {
+                first = k;
+            }
+        }
+        if (first >= 0) {
+            char letter = this.board.letter(first);
+            char correct = this.solution.letter(first);
+            int cell1 = this.topology.letterCell(first);
+            for (int k = 0; swap == null && k < this.nrLetters; k++) {
+                if (this.board.letter(k) == correct && this.solution.letter(k) == letter) {
+                    int cell2 = this.topology.letterCell(k);
+                    swap = new int[] {cell1 / size + 1, cell1 % size + 1,
+                                      cell2 / size + 1, cell2 % size + 1};
+                }
+            }
+        }
+        return swap;
+    }
+
+    /**
+     * Moves on to the next swap of the plan of the hints if the given swap is that one, or
+     * drops the plan if it is not.
+     *
+     * @param row1 the row of the first letter swapped
+     * @param col1 the column of the first letter swapped
+     * @param row2 the row of the second letter swapped
+     * @param col2 the column of the second letter swapped
+     */
+    private void followPlan(int row1, int col1, int row2, int col2) {
+        if (this.plan != null) {
+            int[] next = this.plan[this.planStep];
+            boolean followed = (next[0] == row1 && next[1] == col1 &&
+                                next[2] == row2 && next[3] == col2) ||
+                               (next[0] == row2 && next[1] == col2 &&
+                                next[2] == row1 && next[3] == col1);
+            this.planStep++;
+            if (!followed || this.planStep == this.plan.length) {
+                this.plan = null;
+            }
+        }
+    }
+
+    /**
+     * Adds a given amount to the number of positions where the letter of the grid in the
+     * given position is instead of the letter of the puzzle, if those are being counted.
+     *
+     * @param i      the index of the row of the position
+     * @param j      the index of the column of the position
+     * @param amount the amount to add (1 or -1)
+     * @requires {@code letter(i, j) != correctLetter(i, j)}
+     */
+    private void countMisplaced(int i, int j, int amount) {
+        if (this.misplacedPairs != null) {
+            this.misplacedPairs[pair(letter(i, j), correctLetter(i, j))] += amount;
+        }
+    }
+
+    /**
+     * @param letter  the letter in a position of the grid
+     * @param correct the letter of the puzzle in that position
+     * @return the index of the pair of letters in misplacedPairs
+     */
+    private static int pair(char letter, char correct) {
+        return (letter - 'A') * ALPHABET + (correct - 'A');
+    }
+
+    /** 
+     * @return the maximum ammount of swaps that can be done in the grid, which is
+     *         defaultMaxSwaps(puzzle()) unless the match was built with another number
      */
     public int maxSwaps() {
-        return this.puzzle.shuffleSwaps() + 5;
+        return this.maxSwaps;
+    }
+
+    /** 
+     * @param puzzle the puzzle
+     * @return the number of swaps allowed in a match of the puzzle, which is the number of
+     *         swaps that takes to create the grid + 5
+     */
+    static int defaultMaxSwaps(Puzzle puzzle) {
+        return puzzle.shuffleSwaps() + 5;
     }
 
     /** 
@@ -472,10 +1130,10 @@ public class WaffleGame {
     }
 
     /** 
-     * @return the current grid
+     * @return a copy of the current grid (changing it does not change the match)
      */
     public char[][] getCurrentGrid() {
-        return this.grid;
+        return this.board.toGrid();
     }
 
     /**
@@ -485,20 +1143,7 @@ public class WaffleGame {
      *         the puzzle or false if not
      */
     public boolean puzzleFound() {
-        boolean puzzleFound = true;
-        int i = 0;
-        int j = 0;
-        while (puzzleFound && i < this.grid.length) {
-            while (puzzleFound && j < this.grid[i].length) {
-                if (this.puzzleGrid[i][j] != this.grid[i][j]) {
-                    puzzleFound = false;
-                }
-                j++;
-            }
-            j = 0;
-            i++;
-        } 
-        return puzzleFound;
+        return this.nrCorrectLetters == this.nrLetters;
     }
 
     /** 
@@ -514,15 +1159,33 @@ public class WaffleGame {
 
     /** 
      * Restarts the match by setting the grid back to its inicial state and resetting
-     * the number of swaps allowed.
+     * the number of swaps allowed. The swaps undone this way can be redone.
      */
     public void restart() {
-        for (int i = 0; i < this.grid.length; i++) {
-            for (int j = 0; j < this.grid[i].length; j++) {
-                this.grid[i][j] = this.gridCopy[i][j];
+        this.plan = null;
+        if (this.logFromStart && this.currentMove <= this.topology.size() / 2) {
+            jumpToMove(0);
+        }
+        else {
+            //rebuilding the clues costs about as much as undoing size / 2 swaps
+            clearChanges();
+            int size = this.topology.size();
+            for (int k = 0; k < this.nrLetters; k++) {
+                if (this.board.letter(k) != this.gridCopy.letter(k)) {
+                    int cell = this.topology.letterCell(k);
+                    markChanged(cell / size, cell % size);
+                }
             }
+            this.board.copyFrom(this.gridCopy);
+            this.remainingSwaps = maxSwaps();
+            if (!this.logFromStart) {
+                //the log does not reach the initial grid of a restored match
+                this.nrMoves = 0;
+                this.logFromStart = true;
+            }
+            this.currentMove = 0;
+            rebuildClues();
         }
-        this.remainingSwaps = maxSwaps();
     }
 
     /** 
@@ -532,27 +1195,30 @@ public class WaffleGame {
     public String toString() {
 
         StringBuilder sb = new StringBuilder();
+        char[][] grid = this.board.toGrid();
+        LetterStatus[][] clues = new LetterStatus[grid.length][grid.length];
+        clueAll(clues);
+
         sb.append("      ");
-        for (int i = 0; i < this.grid.length; i++) {
-            for (int j = 0; j < this.grid[i].length; j++) {
-                if (clue(i + 1, j + 1) == LetterStatus.CORRECT_POS) {
-                    sb.append(
-                        StringColouring.toGreenString(String.valueOf(this.grid[i][j])) + " ");
+        for (int i = 0; i < grid.length; i++) {
+            for (int j = 0; j < grid[i].length; j++) {
+                if (clues[i][j] == LetterStatus.CORRECT_POS) {
+                    sb.append(StringColouring.toGreenString(String.valueOf(grid[i][j])));
                 }
-                else if (clue(i + 1, j + 1) == LetterStatus.WRONG_POS) {
-                    sb.append(
-                        StringColouring.toYellowString(String.valueOf(this.grid[i][j])) + " ");
+                else if (clues[i][j] == LetterStatus.WRONG_POS) {
+                    sb.append(StringColouring.toYellowString(String.valueOf(grid[i][j])));
                 }
-                else if (clue(i + 1, j + 1) == LetterStatus.INEXISTENT) {
-                    sb.append(this.grid[i][j] + " ");
+                else {
+                    sb.append(clues[i][j] == null ? ' ' : grid[i][j]);
                 }
+                sb.append(' ');
 
-                if (j == this.grid[i].length - 1 && i != this.grid.length - 1) {
+                if (j == grid[i].length - 1 && i != grid.length - 1) {
                     sb.append("\n      ");
                 }
             }
         }
-        sb.append("\n> " + maxSwaps() + " swaps remaining <");
-        return sb.toString().replace("*"," ");
+        sb.append("\n> ").append(maxSwaps()).append(" swaps remaining <");
+        return sb.toString();
     }
 }
\ No newline at end of file
@@ -0,0 +1,153 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/** 
+ * A load generator for the WaffleServer. Each connection, in its own virtual thread, plays
+ * matches with random swaps, asking for the board after each one (as a player would), until
+ * the given time is over. It prints the sustained swaps per second and the latency of the
+ * swaps (p50, p99 and maximum), kept in a LatencyHistogram, so the percentiles are at most
+ * 6.25% above the latencies (a 5 ms p99 is told apart from an 8 ms one).
+ */
+public class WaffleLoadClient {
+
+    //The number of swaps answered with OK and of matches started
+    private final LongAdder swaps;
+    private final LongAdder games;
+
+    //The latencies of the swaps
+    private final LatencyHistogram latencies;
+
+    private WaffleLoadClient() {
+        this.swaps = new LongAdder();
+        this.games = new LongAdder();
+        this.latencies = new LatencyHistogram();
+    }
+
+    /** 
+     * Runs the load generator.
+     *
+     * @param args the port, the number of connections, the number of seconds and the size of
+     *             the puzzles (by default 7070, 100, 10 and 5)
+     * @throws InterruptedException if interrupted while waiting for the connections
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : WaffleServer.DEFAULT_PORT;
+        int connections = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int size = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+
+        WaffleLoadClient client = new WaffleLoadClient();
+        long end = System.nanoTime() + seconds * 1_000_000_000L;
+        List<Thread> threads = new ArrayList<>();
+
+        for (int c = 0; c < connections; c++) {
+            long seed = c;
+            threads.add(Thread.ofVirtual().start(() -> client.play(port, size, end, seed)));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        long total = client.swaps.sum();
+        System.out.printf("%d connections, %d games, %d swaps: %.0f swaps per second%n",
+                          connections, client.games.sum(), total, total / (double) seconds);
+        System.out.printf("swap latency: p50 %d us, p99 %d us, max %d us%n",
+                          client.latencies.percentileNanos(50) / 1000,
+                          client.latencies.percentileNanos(99) / 1000,
+                          client.latencies.maxNanos() / 1000);
+    }
+
+    /** 
+     * Plays matches in a connection until the given time.
+     *
+     * @param port the port of the server
+     * @param size the size of the puzzles
+     * @param end  the value of System.nanoTime() when it stops
+     * @param seed the seed of the random swaps
+     */
+    private void play(int port, int size, long end, long seed) {
+        SplittableRandom r = new SplittableRandom(seed);
+        int[] swappable = new int[size * size];
+
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+             BufferedReader in = new BufferedReader(
+                 new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+             PrintWriter out = new PrintWriter(socket.getOutputStream(), false,
+                                               StandardCharsets.US_ASCII)) {
+
+            socket.setTcpNoDelay(true);
+            String id = null;
+            String board = null;
+
+            while (System.nanoTime() < end) {
+                if (id == null) {
+                    id = request(in, out, "NEW " + size + " EN").split(" ")[1];
+                    board = request(in, out, "BOARD " + id);
+                    this.games.increment();
+                }
+
+                //the positions without a correct letter, taken from the clues of the board
+                String clues = board.split(" ")[2].replace("/", "");
+                int nrSwappable = 0;
+                for (int k = 0; k < clues.length(); k++) {
+                    if (clues.charAt(k) == 'Y' || clues.charAt(k) == '-') {
+                        swappable[nrSwappable++] = k;
+                    }
+                }
+                int first = swappable[r.nextInt(nrSwappable)];
+                int second = first;
+                while (second == first) {
+                    second = swappable[r.nextInt(nrSwappable)];
+                }
+
+                long start = System.nanoTime();
+                String answer = request(in, out, "SWAP " + id + " " +
+                                        (first / size + 1) + " " + (first % size + 1) + " " +
+                                        (second / size + 1) + " " + (second % size + 1));
+                this.latencies.record(System.nanoTime() - start);
+                this.swaps.increment();
+
+                if (answer.endsWith("PLAYING")) {
+                    board = request(in, out, "BOARD " + id);
+                }
+                else {
+                    request(in, out, "END " + id);
+                    id = null;
+                }
+            }
+            out.print("QUIT\n");
+            out.flush();
+        }
+        catch (IOException e) {
+            System.err.println("connection failed: " + e.getMessage());
+        }
+    }
+
+    /** 
+     * Sends a command and waits for the answer.
+     *
+     * @return the answer
+     * @throws IOException if the connection fails or the answer is an error
+     */
+    private static String request(BufferedReader in, PrintWriter out, String command)
+            throws IOException {
+
+        out.print(command);
+        out.print('\n');
+        out.flush();
+        String answer = in.readLine();
+        if (answer == null || !answer.startsWith("OK")) {
+            throw new IOException(command + " -> " + answer);
+        }
+        return answer;
+    }
+}
@@ -0,0 +1,449 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/** 
+ * A headless server that hosts many matches of the Waffle Game in the same JVM. It listens
+ * on a local socket and serves each connection in its own virtual thread, with a line based
+ * protocol (one command per line, one answer per line):
+ * - NEW size EN|PT             -> OK id                 starts a match
+ * - SWAP id row1 col1 row2 col2 -> OK remaining state    state is PLAYING, WON or LOST
+ * - BOARD id                   -> OK rows clues remaining
+ * - RESTART id                 -> OK remaining
+ * - HINT id                    -> OK row1 col1 row2 col2 the best next swap
+ * - END id                     -> OK                    ends a match
+ * - QUIT                                                 closes the connection
+ * The rows of BOARD are the rows of the grid separated by '/' and the clues have, for each
+ * position, G (correct position), Y (wrong position), - (inexistent) or * (no letter).
+ * Errors are answered with ERR and a message. The matches that get no command for
+ * IDLE_MILLIS are ended as if by END, so the ones abandoned by their clients do not stay.
+ * When a journal file is given, the matches are recorded in a SessionJournal and the ones
+ * that had not ended are recovered when the server starts again.
+ */
+public class WaffleServer {
+
+    //The port used when none is given
+    public static final int DEFAULT_PORT = 7070;
+
+    //The number of boards kept ready for each size and language
+    private static final int POOL_LOW = 64;
+    private static final int POOL_HIGH = 256;
+
+    //The number of swaps of a match between its snapshots in the journal
+    private static final int SNAPSHOT_INTERVAL = 8;
+
+    //The time after which a match with no commands is ended and how often that is checked
+    private static final long IDLE_MILLIS = 30 * 60 * 1000;
+    private static final long EVICTION_MILLIS = 60 * 1000;
+
+    //The matches being played, by id
+    private final Map<Long, Session> sessions;
+
+    //The id of the next match
+    private final AtomicLong nextId;
+
+    //The boards ready to start matches, for sizes 5 and 7 in english and portuguese
+    private final BoardPool[] pools;
+
+    //The journal of the matches (null if they are not recorded)
+    private final SessionJournal journal;
+
+    /** 
+     * Builds a server with no matches, which are not recorded.
+     */
+    public WaffleServer() {
+        this.sessions = new ConcurrentHashMap<>();
+        this.nextId = new AtomicLong(1);
+        this.journal = null;
+        this.pools = newPools();
+    }
+
+    /** 
+     * Builds a server with the matches recovered from a journal, where its matches are
+     * recorded. The journal is compacted before it is used.
+     *
+     * @param journalFile the file of the journal
+     * @throws IOException if the journal cannot be read or written
+     */
+    public WaffleServer(Path journalFile) throws IOException {
+        Map<Long, WaffleGame> recovered = SessionJournal.recover(journalFile);
+        SessionJournal.compact(journalFile, recovered);
+
+        this.sessions = new ConcurrentHashMap<>();
+        for (Map.Entry<Long, WaffleGame> entry : recovered.entrySet()) {
+            this.sessions.put(entry.getKey(), new Session(entry.getValue()));
+        }
+        this.nextId = new AtomicLong(recovered.isEmpty() ? 1 :
+                                     Collections.max(recovered.keySet()) + 1);
+        this.journal = SessionJournal.open(journalFile);
+        this.pools = newPools();
+    }
+
+    /** 
+     * @return the pools of boards for sizes 5 and 7 in english and portuguese
+     */
+    private static BoardPool[] newPools() {
+        return new BoardPool[] {new BoardPool(5, true, POOL_LOW, POOL_HIGH),
+                                new BoardPool(7, true, POOL_LOW, POOL_HIGH),
+                                new BoardPool(5, false, POOL_LOW, POOL_HIGH),
+                                new BoardPool(7, false, POOL_LOW, POOL_HIGH)};
+    }
+
+    /** 
+     * Starts a server on the local address, with its GameMetrics published through JMX.
+     *
+     * @param args the port (DEFAULT_PORT if none is given) and the file of the journal
+     *             (none if not given)
+     * @throws IOException if the port or the journal cannot be used
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        WaffleServer server = args.length > 1 ? new WaffleServer(Paths.get(args[1])) :
+                              new WaffleServer();
+        GameMetrics.register();
+        server.serve(port);
+    }
+
+    /** 
+     * Accepts connections on the given port of the local address until the thread is
+     * interrupted or the socket fails, serving each one in a virtual thread. Meanwhile, the
+     * matches idle for more than IDLE_MILLIS are ended every EVICTION_MILLIS.
+     *
+     * @param port the port
+     * @throws IOException if the port cannot be used
+     */
+    public void serve(int port) throws IOException {
+        Thread evictor = Thread.ofVirtual().name("waffle-eviction").start(() -> {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    Thread.sleep(EVICTION_MILLIS);
+                    evictIdle(IDLE_MILLIS);
+                }
+            }
+            catch (InterruptedException e) {
+                //the server stopped
+            }
+        });
+        try (ServerSocket server = new ServerSocket(port, 1024, InetAddress.getLoopbackAddress())) {
+            System.out.println("Waffle server listening on " + server.getLocalSocketAddress());
+            while (!Thread.currentThread().isInterrupted()) {
+                Socket socket = server.accept();
+                Thread.ofVirtual().name("waffle-connection").start(() -> handle(socket));
+            }
+        }
+        finally {
+            evictor.interrupt();
+        }
+    }
+
+    /** 
+     * @return the number of matches being played
+     */
+    public int nrSessions() {
+        return this.sessions.size();
+    }
+
+    /** 
+     * Ends the matches that got no command for longer than the given time, as if by END.
+     *
+     * @param maxIdleMillis the time, in milliseconds
+     * @return the number of matches ended
+     * @requires {@code maxIdleMillis >= 0}
+     */
+    public int evictIdle(long maxIdleMillis) {
+        long now = System.nanoTime();
+        int evicted = 0;
+        for (Map.Entry<Long, Session> entry : this.sessions.entrySet()) {
+            Session session = entry.getValue();
+            if (now - session.lastUsed > maxIdleMillis * 1_000_000 &&
+                this.sessions.remove(entry.getKey(), session)) {
+
+                endJournal(entry.getKey(), session);
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    /** 
+     * Answers the commands of a connection until it is closed.
+     *
+     * @param socket the socket of the connection
+     */
+    private void handle(Socket socket) {
+        try (socket;
+             BufferedReader in = new BufferedReader(
+                 new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+             PrintWriter out = new PrintWriter(socket.getOutputStream(), false,
+                                               StandardCharsets.US_ASCII)) {
+
+            socket.setTcpNoDelay(true);
+            String line = in.readLine();
+            while (line != null && !line.equals("QUIT")) {
+                out.print(execute(line));
+                out.print('\n');
+                out.flush();
+                line = in.readLine();
+            }
+        }
+        catch (IOException e) {
+            //the client went away, its matches stay available until ended or idle
+        }
+    }
+
+    /** 
+     * Executes a command of the protocol.
+     *
+     * @param line the command
+     * @return the answer to the command
+     */
+    public String execute(String line) {
+        String[] args = line.trim().split(" +");
+        String answer;
+
+        try {
+            switch (args[0]) {
+                case "NEW":
+                    answer = newGame(Integer.parseInt(args[1]), args[2]);
+                    break;
+                case "SWAP":
+                    answer = swap(Long.parseLong(args[1]), Integer.parseInt(args[2]),
+                                  Integer.parseInt(args[3]), Integer.parseInt(args[4]),
+                                  Integer.parseInt(args[5]));
+                    break;
+                case "BOARD":
+                    answer = board(session(Long.parseLong(args[1])));
+                    break;
+                case "RESTART":
+                    answer = restart(Long.parseLong(args[1]));
+                    break;
+                case "HINT":
+                    answer = hint(session(Long.parseLong(args[1])));
+                    break;
+                case "END":
+                    answer = end(Long.parseLong(args[1]));
+                    break;
+                default:
+                    answer = "ERR unknown command " + args[0];
+            }
+        }
+        catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            answer = "ERR invalid arguments: " + line;
+        }
+        catch (IllegalArgumentException e) {
+            answer = "ERR " + e.getMessage();
+        }
+        return answer;
+    }
+
+    /** 
+     * @param size     the size of the puzzle
+     * @param language the language of the puzzle (EN or PT)
+     * @return the answer with the id of a new match
+     */
+    private String newGame(int size, String language) {
+        int pool = (size == 5 ? 0 : size == 7 ? 1 : -1);
+        if (pool < 0 || !(language.equals("EN") || language.equals("PT"))) {
+            throw new IllegalArgumentException("no puzzles of size " + size + " in " + language);
+        }
+        BoardPool.Board board = this.pools[language.equals("EN") ? pool : pool + 2].take();
+        long id = this.nextId.getAndIncrement();
+        WaffleGame game = new WaffleGame(board.puzzle(), board.grid());
+        GameMetrics.get().recordGameStarted();
+        if (this.journal != null) {
+            this.journal.snapshot(id, game);
+        }
+        this.sessions.put(id, new Session(game));
+        return "OK " + id;
+    }
+
+    /** 
+     * @param id the id of a match
+     * @return the match with the given id, which is marked as used now
+     * @throws IllegalArgumentException if there is no match with that id
+     */
+    private Session session(long id) {
+        Session session = this.sessions.get(id);
+        if (session == null) {
+            throw new IllegalArgumentException("unknown game " + id);
+        }
+        session.lastUsed = System.nanoTime();
+        return session;
+    }
+
+    /** 
+     * @return the answer to a swap in the match with the given id
+     */
+    private String swap(long id, int row1, int col1, int row2, int col2) {
+        Session session = session(id);
+        WaffleGame game = session.game;
+        session.lock.lock();
+        try {
+            if (game.isOver()) {
+                throw new IllegalArgumentException("the game is over");
+            }
+            if (!game.swappablePosition(row1, col1) || !game.swappablePosition(row2, col2) ||
+                (row1 == row2 && col1 == col2)) {
+
+                throw new IllegalArgumentException("positions cannot be swapped");
+            }
+            int remainingSwaps = game.remainingSwaps();
+            game.swap(row1, col1, row2, col2);
+            if (this.journal != null) {
+                int swaps = game.maxSwaps() - game.remainingSwaps();
+                if (game.remainingSwaps() != remainingSwaps && swaps % SNAPSHOT_INTERVAL == 0) {
+                    this.journal.snapshot(id, game);
+                }
+                else {
+                    this.journal.swap(id, row1, col1, row2, col2);
+                }
+            }
+            return "OK " + game.remainingSwaps() + " " + state(game);
+        }
+        finally {
+            session.lock.unlock();
+        }
+    }
+
+    /** 
+     * @return the answer with the grid and the clues of the given match
+     */
+    private static String board(Session session) {
+        WaffleGame game = session.game;
+        session.lock.lock();
+        try {
+            char[][] grid = game.getCurrentGrid();
+            LetterStatus[][] clues = new LetterStatus[grid.length][grid.length];
+            game.clueAll(clues);
+
+            StringBuilder rows = new StringBuilder("OK ");
+            StringBuilder colours = new StringBuilder(" ");
+            for (int i = 0; i < grid.length; i++) {
+                if (i > 0) {
+                    rows.append('/');
+                    colours.append('/');
+                }
+                rows.append(grid[i]);
+                for (int j = 0; j < grid.length; j++) {
+                    colours.append(clues[i][j] == null ? '*' :
+                                   clues[i][j] == LetterStatus.CORRECT_POS ? 'G' :
+                                   clues[i][j] == LetterStatus.WRONG_POS ? 'Y' : '-');
+                }
+            }
+            return rows.append(colours).append(' ').append(game.remainingSwaps()).toString();
+        }
+        finally {
+            session.lock.unlock();
+        }
+    }
+
+    /** 
+     * @return the answer to restarting the match with the given id
+     */
+    private String restart(long id) {
+        Session session = session(id);
+        session.lock.lock();
+        try {
+            session.game.restart();
+            if (this.journal != null) {
+                this.journal.restart(id);
+            }
+            return "OK " + session.game.remainingSwaps();
+        }
+        finally {
+            session.lock.unlock();
+        }
+    }
+
+    /** 
+     * @return the answer with the best next swap of the given match
+     */
+    private static String hint(Session session) {
+        session.lock.lock();
+        try {
+            if (session.game.isOver()) {
+                throw new IllegalArgumentException("the game is over");
+            }
+            int[] hint = session.game.hint();
+            return "OK " + hint[0] + " " + hint[1] + " " + hint[2] + " " + hint[3];
+        }
+        finally {
+            session.lock.unlock();
+        }
+    }
+
+    /** 
+     * @return the answer to ending the match with the given id
+     */
+    private String end(long id) {
+        Session session = this.sessions.remove(id);
+        String answer = "ERR unknown game " + id;
+        if (session != null) {
+            endJournal(id, session);
+            answer = "OK";
+        }
+        return answer;
+    }
+
+    /** 
+     * Records in the journal, if there is one, that a match removed from the sessions ended.
+     *
+     * @param id      the id of the match
+     * @param session the match
+     */
+    private void endJournal(long id, Session session) {
+        if (this.journal != null) {
+            session.lock.lock();
+            try {
+                this.journal.end(id);
+            }
+            finally {
+                session.lock.unlock();
+            }
+        }
+    }
+
+    /** 
+     * @param game the match
+     * @return PLAYING, WON or LOST
+     */
+    private static String state(WaffleGame game) {
+        return game.puzzleFound() ? "WON" : game.isOver() ? "LOST" : "PLAYING";
+    }
+
+    /** 
+     * The objects of this class are the matches being played, with the last time they got
+     * a command. The lock orders the commands of a match and their records in the journal;
+     * it is a ReentrantLock so a virtual thread that writes the journal while holding it
+     * does not pin its carrier thread.
+     */
+    private static class Session {
+
+        //The match
+        private final WaffleGame game;
+
+        //Held while a command uses the match
+        private final ReentrantLock lock;
+
+        //The value of System.nanoTime() when the match last got a command
+        private volatile long lastUsed;
+
+        private Session(WaffleGame game) {
+            this.game = game;
+            this.lock = new ReentrantLock();
+            this.lastUsed = System.nanoTime();
+        }
+    }
+}
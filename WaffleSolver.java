@@ -0,0 +1,421 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/** 
+ * The objects of this class are immutable and represent the optimal solutions of grids of the
+ * Waffle Game, that is, the minimum number of swaps needed to turn a grid into the puzzle
+ * and a list of swaps that achieves it.
+ *
+ * Each letter that is not in its correct position is seen as an edge from the letter it
+ * has to the letter it should have. Fixing a cycle of k edges takes k - 1 swaps, so the
+ * minimum number of swaps is the number of misplaced letters minus the maximum number of
+ * cycles in which those edges can be split.
+ */
+public class WaffleSolver {
+
+    //The number of letters of the alphabet used in the words of the puzzles ('A' to 'Z')
+    private static final int ALPHABET = 26;
+
+    //The minimum number of swaps needed to solve the grid
+    private int minSwaps;
+
+    //The swaps that solve the grid, each one as {row1, col1, row2, col2}
+    private int[][] swaps;
+
+    //The number of edges between each pair of letters (from * ALPHABET + to) still to be split
+    private int[] edges;
+
+    //The edges with at least one misplaced letter, used to build the keys of the memo
+    private int[] usedEdges;
+
+    //The maximum number of cycles already computed for each state of the edges
+    private Map<String, Integer> memo;
+
+    /** 
+     * Solves a grid of the given puzzle.
+     *
+     * @param puzzle the puzzle
+     * @param grid   the grid to solve
+     * @requires {@code WaffleGame.validGrid(puzzle, grid)}
+     */
+    public WaffleSolver(Puzzle puzzle, char[][] grid) {
+        char[][] puzzleGrid = puzzle.buildGrid();
+
+        //the positions of the misplaced letters of each edge, as row * size + column
+        List<List<Integer>> positions = new ArrayList<>();
+        for (int e = 0; e < ALPHABET * ALPHABET; e++) {
+            positions.add(new ArrayList<>());
+        }
+        this.edges = new int[ALPHABET * ALPHABET];
+        int misplaced = 0;
+
+        for (int i = 0; i < grid.length; i++) {
+            for (int j = 0; j < grid.length; j++) {
+                if (grid[i][j] != puzzleGrid[i][j]) {
+                    int edge = (grid[i][j] - 'A') * ALPHABET + (puzzleGrid[i][j] - 'A');
+                    this.edges[edge]++;
+                    positions.get(edge).add(i * grid.length + j);
+                    misplaced++;
+                }
+            }
+        }
+
+        List<int[]> cycles = new ArrayList<>();
+
+        /*A cycle of two letters can always be part of an optimal split, so those are taken
+          right away and the search only deals with longer cycles*/
+        for (int a = 0; a < ALPHABET; a++) {
+            for (int b = a + 1; b < ALPHABET; b++) {
+                while (this.edges[a * ALPHABET + b] > 0 && this.edges[b * ALPHABET + a] > 0) {
+                    this.edges[a * ALPHABET + b]--;
+                    this.edges[b * ALPHABET + a]--;
+                    cycles.add(new int[] {a, b});
+                }
+            }
+        }
+
+        int nrUsedEdges = 0;
+        for (int e = 0; e < this.edges.length; e++) {
+            if (this.edges[e] > 0) {
+                nrUsedEdges++;
+            }
+        }
+        this.usedEdges = new int[nrUsedEdges];
+        for (int e = 0, k = 0; e < this.edges.length; e++) {
+            if (this.edges[e] > 0) {
+                this.usedEdges[k++] = e;
+            }
+        }
+        this.memo = new HashMap<>();
+        collectCycles(cycles);
+
+        this.minSwaps = misplaced - cycles.size();
+        this.swaps = new int[this.minSwaps][];
+        int s = 0;
+
+        for (int[] cycle : cycles) {
+            //the positions of the cycle, the letter of each one should go to the previous
+            int[] cells = new int[cycle.length];
+            for (int k = 0; k < cycle.length; k++) {
+                List<Integer> edgePositions =
+                    positions.get(cycle[k] * ALPHABET + cycle[(k + 1) % cycle.length]);
+                cells[k] = edgePositions.remove(edgePositions.size() - 1);
+            }
+            for (int k = 0; k < cells.length - 1; k++) {
+                this.swaps[s++] = new int[] {cells[k] / grid.length + 1,
+                                             cells[k] % grid.length + 1,
+                                             cells[k + 1] / grid.length + 1,
+                                             cells[k + 1] % grid.length + 1};
+            }
+        }
+        this.edges = null;
+        this.memo = null;
+    }
+
+    /** 
+     * @return the minimum number of swaps needed to turn the grid into the puzzle
+     */
+    public int minSwaps() {
+        return this.minSwaps;
+    }
+
+    /** 
+     * @return the swaps that turn the grid into the puzzle, in the order they must be made,
+     *         each one as {row1, col1, row2, col2} (as in WaffleGame.swap)
+     * @ensures {@code \\result.length == minSwaps()}
+     */
+    public int[][] getSwaps() {
+        int[][] swaps = new int[this.swaps.length][];
+        for (int s = 0; s < swaps.length; s++) {
+            swaps[s] = this.swaps[s].clone();
+        }
+        return swaps;
+    }
+
+    /** 
+     * Measures how many shuffled grids of the puzzles of the PuzzleGenerator are solved per
+     * second, for the sizes 5 and 7.
+     *
+     * @param args the number of seconds each size is measured (1 by default)
+     */
+    public static void main(String[] args) {
+        double seconds = args.length > 0 ? Double.parseDouble(args[0]) : 1;
+
+        for (int size = 5; size <= 7; size += 2) {
+            PuzzleGenerator generator = new PuzzleGenerator(size, true);
+            Puzzle[] puzzles = new Puzzle[generator.nrPuzzles()];
+            char[][][] grids = new char[puzzles.length][][];
+
+            for (int id = 0; id < puzzles.length; id++) {
+                puzzles[id] = new Puzzle(size, generator.getHorizontalWords(id),
+                                         generator.getVerticalWords(id));
+                grids[id] = puzzles[id].getShuffledGrid();
+            }
+
+            long start = System.nanoTime();
+            long end = start + (long) (seconds * 1e9);
+            long solved = 0;
+            long totalSwaps = 0;
+            while (System.nanoTime() < end) {
+                for (int id = 0; id < puzzles.length; id++) {
+                    totalSwaps += new WaffleSolver(puzzles[id], grids[id]).minSwaps();
+                    solved++;
+                }
+            }
+            System.out.printf("size %d: %.0f boards solved per second (%.1f swaps on average)%n",
+                              size, solved / ((System.nanoTime() - start) / 1e9),
+                              (double) totalSwaps / solved);
+        }
+    }
+
+    /** 
+     * Adds to the given list the cycles of a split of the remaining edges with the maximum
+     * number of cycles, removing those edges.
+     *
+     * @param cycles the list where the cycles are added, each one as its sequence of letters
+     */
+    private void collectCycles(List<int[]> cycles) {
+        int[] path = new int[ALPHABET];
+        int start = firstLetterWithEdges();
+
+        while (start >= 0) {
+            int best = maxCycles();
+            int[] chosen = findCycle(start, start, path, 0, best - 1);
+            cycles.add(chosen);
+            removeCycle(chosen, -1);
+            start = firstLetterWithEdges();
+        }
+    }
+
+    /** 
+     * @return the maximum number of cycles in which the remaining edges can be split
+     */
+    private int maxCycles() {
+        int start = firstLetterWithEdges();
+        int maxCycles = 0;
+
+        if (start >= 0) {
+            String key = stateKey();
+            Integer known = this.memo.get(key);
+
+            if (known != null) {
+                maxCycles = known;
+            }
+            else {
+                maxCycles = bestThrough(start, start, new boolean[ALPHABET], cycleBound());
+                this.memo.put(key, maxCycles);
+            }
+        }
+        return maxCycles;
+    }
+
+    /** 
+     * Searches the simple cycles through the given start letter, continuing from the letter
+     * at, and returns the maximum number of cycles of a split that contains one of them.
+     *
+     * @param start   the letter where the cycles start and end
+     * @param at      the current letter of the path
+     * @param visited the letters already in the path
+     * @param limit   a maximum of the number of cycles, at which the search stops
+     * @return the maximum number of cycles found, or 0 if no cycle exists from this path
+     */
+    private int bestThrough(int start, int at, boolean[] visited, int limit) {
+        int best = 0;
+        //no split has more cycles than the edges left divided by the shortest cycle (3)
+        int bound = Math.min(limit, remainingEdges() / 3 + 1);
+
+        for (int next = 0; next < ALPHABET && best < bound; next++) {
+            int edge = at * ALPHABET + next;
+            if (this.edges[edge] > 0 && (next == start || !visited[next])) {
+                this.edges[edge]--;
+                if (next == start) {
+                    best = Math.max(best, 1 + maxCycles());
+                }
+                else {
+                    visited[next] = true;
+                    best = Math.max(best, bestThrough(start, next, visited, limit));
+                    visited[next] = false;
+                }
+                this.edges[edge]++;
+            }
+        }
+        return best;
+    }
+
+    /** 
+     * Every cycle has an edge that goes back in any order of the letters, so no split of the
+     * remaining edges has more cycles than the edges that go back in an order. The orders
+     * are built by the greedy method of Eades, Lin and Smyth, once starting with each letter,
+     * and the best one is used.
+     *
+     * @return a maximum of the number of cycles in which the remaining edges can be split
+     */
+    private int cycleBound() {
+        //the letters with edges left
+        int[] letters = new int[ALPHABET];
+        int nrLetters = 0;
+        for (int l = 0; l < ALPHABET; l++) {
+            boolean hasEdges = false;
+            for (int k = 0; k < ALPHABET && !hasEdges; k++) {
+                hasEdges = this.edges[l * ALPHABET + k] > 0;
+            }
+            if (hasEdges) {
+                letters[nrLetters] = l;
+                nrLetters++;
+            }
+        }
+
+        int bound = remainingEdges() / 3;
+        for (int k = 0; k < nrLetters && bound > 0; k++) {
+            bound = Math.min(bound, edgesBack(letters, nrLetters, k));
+        }
+        return bound;
+    }
+
+    /** 
+     * Orders the given letters starting with one of them, then taking the letters without
+     * edges coming from the letters left to the start of the order, the letters without edges
+     * going to them to the end and, if there are none, the letter with the most edges going
+     * out (and the fewest coming in) to the start.
+     *
+     * @param letters   the letters with edges left (every remaining edge is between two)
+     * @param nrLetters the number of letters
+     * @param first     the index in letters of the first letter of the order
+     * @return the number of edges that go back in the order
+     */
+    private int edgesBack(int[] letters, int nrLetters, int first) {
+        int[] in = new int[nrLetters];
+        int[] out = new int[nrLetters];
+        boolean[] left = new boolean[nrLetters];
+        for (int a = 0; a < nrLetters; a++) {
+            left[a] = true;
+            for (int b = 0; b < nrLetters; b++) {
+                out[a] += this.edges[letters[a] * ALPHABET + letters[b]];
+                in[a] += this.edges[letters[b] * ALPHABET + letters[a]];
+            }
+        }
+
+        int back = 0;
+        int next = first;
+        for (int nrLeft = nrLetters - 1; nrLeft >= 0; nrLeft--) {
+            //the edges from the letters left to a letter at the start go back
+            if (in[next] > 0 && out[next] > 0) {
+                back += in[next];
+            }
+            left[next] = false;
+
+            int chosen = -1;
+            int bestDelta = Integer.MIN_VALUE;
+            for (int a = 0; a < nrLetters; a++) {
+                if (left[a]) {
+                    out[a] -= this.edges[letters[a] * ALPHABET + letters[next]];
+                    in[a] -= this.edges[letters[next] * ALPHABET + letters[a]];
+                    int delta = in[a] == 0 || out[a] == 0 ? Integer.MAX_VALUE : out[a] - in[a];
+                    if (delta > bestDelta) {
+                        bestDelta = delta;
+                        chosen = a;
+                    }
+                }
+            }
+            next = chosen;
+        }
+        return back;
+    }
+
+    /** 
+     * Finds a simple cycle through the given start letter whose removal leaves edges that
+     * can still be split into the given number of cycles.
+     *
+     * @param start  the letter where the cycle starts and ends
+     * @param at     the current letter of the path
+     * @param path   the letters of the path so far
+     * @param length the number of letters in the path
+     * @param target the number of cycles the remaining edges must still allow
+     * @return the letters of the cycle or null if there is none from this path
+     */
+    private int[] findCycle(int start, int at, int[] path, int length, int target) {
+        int[] cycle = null;
+        path[length] = at;
+
+        for (int next = 0; next < ALPHABET && cycle == null; next++) {
+            int edge = at * ALPHABET + next;
+            if (this.edges[edge] > 0 && (next == start || !inPath(path, length, next))) {
+                this.edges[edge]--;
+                if (next == start) {
+                    if (maxCycles() == target) {
+                        cycle = new int[length + 1];
+                        System.arraycopy(path, 0, cycle, 0, length + 1);
+                    }
+                }
+                else {
+                    cycle = findCycle(start, next, path, length + 1, target);
+                }
+                this.edges[edge]++;
+            }
+        }
+        return cycle;
+    }
+
+    /** 
+     * @param path   the letters of a path
+     * @param length the index of the last letter of the path
+     * @param letter the letter
+     * @return true if the letter is one of the first length + 1 letters of the path
+     */
+    private static boolean inPath(int[] path, int length, int letter) {
+        boolean inPath = false;
+        for (int k = 0; k <= length && !inPath; k++) {
+            inPath = path[k] == letter;
+        }
+        return inPath;
+    }
+
+    /** 
+     * Adds the given amount to every edge of a cycle.
+     *
+     * @param cycle  the letters of the cycle
+     * @param amount the amount to add
+     */
+    private void removeCycle(int[] cycle, int amount) {
+        for (int k = 0; k < cycle.length; k++) {
+            this.edges[cycle[k] * ALPHABET + cycle[(k + 1) % cycle.length]] += amount;
+        }
+    }
+
+    /** 
+     * @return the smallest letter with edges left or -1 if there is none
+     */
+    private int firstLetterWithEdges() {
+        int first = -1;
+        for (int k = 0; k < this.usedEdges.length && first < 0; k++) {
+            if (this.edges[this.usedEdges[k]] > 0) {
+                first = this.usedEdges[k] / ALPHABET;
+            }
+        }
+        return first;
+    }
+
+    /** 
+     * @return the number of edges left
+     */
+    private int remainingEdges() {
+        int remaining = 0;
+        for (int e : this.usedEdges) {
+            remaining += this.edges[e];
+        }
+        return remaining;
+    }
+
+    /** 
+     * @return a key that identifies the current number of edges between each pair of letters
+     */
+    private String stateKey() {
+        char[] key = new char[this.usedEdges.length];
+        for (int k = 0; k < key.length; k++) {
+            key[k] = (char) this.edges[this.usedEdges[k]];
+        }
+        return new String(key);
+    }
+}
@@ -1,3 +1,17 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import javax.management.ObjectName;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
 /**
  *
  * Esta classe e fornecida para auxilio no projeto da disciplina de 
@@ -39,7 +53,22 @@ public class WaffleTest {
         System.out.println(">>>>>>>>>>>>>>>>>>>>>>><<<<<<<<<<<<<<<<<<<<<<<");
         testLetterStatus();
         testPuzzle();
+        testGridTopology();
+        testCompactBoard();
+        testWaffleSolver();
+        testDictionaryPuzzleGenerator();
+        testPuzzlePack();
+        testBoardPool();
         testWaffleGame();
+        testSessionJournal();
+        testWaffleServer();
+        testDifficultyIndex();
+        testPuzzleTables();
+        testFrameTimeCounter();
+        testScreenCache();
+        testGameMetrics();
+        testGameEvents();
+        testGameSimulator();
         System.out.println("\n>>>>>>>>>>>>>>> Tests finished <<<<<<<<<<<<<<<\n");
         System.out.println("                Important notes: \n");
         System.out.println("* These are just a couple of simple tests, just ");
@@ -103,6 +132,7 @@ public class WaffleTest {
 	 * - getLetterInHorizontalWord(...)
 	 * - getLetterInVerticalWord(...)
 	 * - getShuffledGrid()
+	 * - getShuffledGrid(...)
 	 */
 	private static void testPuzzle() {
         String msgTest = "";
@@ -144,6 +174,37 @@ public class WaffleTest {
             System.out.println("> Testing method getShuffledGrid: ");
             char[][] shuffledGrid = puzzle.getShuffledGrid();
             testShuffledGrid(shuffledGrid);
+
+            System.out.println("> Testing method getShuffledGrid with a seed: ");
+            char[][] seededGrid = puzzle.getShuffledGrid(313L);
+            testShuffledGrid(seededGrid);
+
+            System.out.print("  >> same grid for the same seed: ");
+            // a quadricula de uma semente e sempre a mesma, em qualquer JVM
+            char[][] expectedSeededGrid = new char[][] {
+                {'C', 'M', 'O', 'H', 'E'},
+                {'U', '*', 'N', '*', 'U'},
+                {'I', 'O', 'N', 'R', 'S'},
+                {'E', '*', 'E', '*', 'R'},
+                {'T', 'W', 'E', 'H', 'E'}
+            };
+            char[][] buffer = new char[size][size];
+            puzzle.getShuffledGrid(new SplittableRandom(313L), buffer);
+            msgTest = areEqual(expectedSeededGrid, seededGrid) && areEqual(seededGrid, buffer) ?
+                      "OK" : "\n\n ERROR: the seeded grid is not the expected one \n";
+			System.out.println(msgTest);
+
+            System.out.print("  >> exact number of swaps to solve it: ");
+            // a quadricula baralhada resolve-se sempre em exatamente o numero de trocas pedido
+            boolean exactSwaps = new WaffleSolver(puzzle, seededGrid).minSwaps() == puzzle.shuffleSwaps();
+            for (int swaps = 0; swaps <= puzzle.shuffleSwaps(); swaps++) {
+                puzzle.getShuffledGrid(new SplittableRandom(swaps), buffer, swaps);
+                exactSwaps &= new WaffleSolver(puzzle, buffer).minSwaps() == swaps &&
+                              testShuffleDiagonals(puzzleGrid, buffer);
+            }
+            msgTest = exactSwaps ? "OK" : 
+                      "\n\n ERROR: the shuffled grid does not need the requested number of swaps \n";
+			System.out.println(msgTest);
         } catch (Exception e) {
 			msgTest = "\n\n ERROR: Failed because of " + e.toString() + "\n";
 			System.out.println(msgTest);
@@ -170,6 +231,42 @@ public class WaffleTest {
                   "\n\n ERROR: the function did validate invalid words \n";
 			System.out.println(msgTest);
 
+        System.out.print("  >> on words with accented letters: ");
+        // letras maiusculas com acentos nao sao letras entre A e Z
+        String[] accentedHWords = new String[] {"\u00C7ABCD", "EFGHI", "JKLMN"};
+        String[] accentedVWords = new String[] {"\u00C7XEYJ", "BZGWL", "DQIRN"};
+        msgTest = !Puzzle.validWords(size, accentedHWords, accentedVWords) &&
+                  !Puzzle.validWords(size, hWords,
+                                     new String[] {"COMET", "OWN\u00C9R", "ENSUE"}) &&
+                  Puzzle.validWords(size, new String[] {"ZABCD", "EFGHI", "JKLMN"},
+                                    new String[] {"ZXEYJ", "BZGWL", "DQIRN"}) ? "OK" : 
+                  "\n\n ERROR: the function did validate words with accented letters \n";
+			System.out.println(msgTest);
+
+        System.out.print("  >> on the largest size: ");
+        // palavras de tamanho 21 que se cruzam, formadas por letras em sequencia
+        String[][] largeWords = largePuzzleWords(Puzzle.MAX_SIZE);
+        msgTest = Puzzle.validWords(Puzzle.MAX_SIZE, largeWords[0], largeWords[1]) &&
+                  Puzzle.overlappedWords(Puzzle.MAX_SIZE, largeWords[0], largeWords[1]) &&
+                  !Puzzle.validWords(Puzzle.MAX_SIZE + 2, largeWords[0], largeWords[1]) ? "OK" : 
+                  "\n\n ERROR: the function did not validate the words of a large puzzle \n";
+			System.out.println(msgTest);
+
+        System.out.print("  >> playing the largest size: ");
+        Puzzle largePuzzle = new Puzzle(Puzzle.MAX_SIZE, largeWords[0], largeWords[1]);
+        char[][] largeGrid = largePuzzle.getShuffledGrid();
+        boolean largeSolved = WaffleGame.validGrid(largePuzzle, largeGrid);
+        if (largeSolved) {
+            WaffleGame largeGame = new WaffleGame(largePuzzle, largeGrid);
+            for (int[] swap : new WaffleSolver(largePuzzle, largeGrid).getSwaps()) {
+                largeGame.swap(swap[0], swap[1], swap[2], swap[3]);
+            }
+            largeSolved = largeGame.puzzleFound() && largeGame.remainingSwaps() >= 0;
+        }
+        msgTest = largeSolved ? "OK" : 
+                  "\n\n ERROR: the shuffled grid of a large puzzle could not be solved \n";
+			System.out.println(msgTest);
+
         System.out.println("> Testing function overlappedWords");
 
         System.out.print("  >> on overlapping words: ");
@@ -183,6 +280,27 @@ public class WaffleTest {
 			System.out.println(msgTest);
     }
 
+    /**
+	 * Funcao auxiliar que cria as palavras de um puzzle de um dado tamanho, com letras
+	 * em sequencia para que as palavras horizontais e verticais se cruzem
+     * @param largeSize o tamanho das palavras
+     * @return as palavras horizontais e as palavras verticais
+	 */
+    private static String[][] largePuzzleWords(int largeSize) {
+        String[][] words = new String[2][(largeSize + 1) / 2];
+        for (int w = 0; w < words[0].length; w++) {
+            StringBuilder hWord = new StringBuilder();
+            StringBuilder vWord = new StringBuilder();
+            for (int k = 0; k < largeSize; k++) {
+                hWord.append((char) ('A' + (2 * w + k) % 26));
+                vWord.append((char) ('A' + (k + 2 * w) % 26));
+            }
+            words[0][w] = hWord.toString();
+            words[1][w] = vWord.toString();
+        }
+        return words;
+    }
+
     /**
 	 * Funcao auxiliar que valida algumas propriedades de uma matriz baralhada
      * @param shuffledGrid matriz dada
@@ -229,6 +347,1043 @@ public class WaffleTest {
         return diagonalsOk;
     }
 
+    /**
+	 * Testa a classe GridTopology, comparando-a com a quadricula do puzzle #313
+	 */
+    private static void testGridTopology() {
+        String msgTest = "";
+        System.out.println("\n>>>>>>>>>>>>>>>>>>>>>>><<<<<<<<<<<<<<<<<<<<<<<");
+        System.out.println(">>>>>>>>>> Testing class GridTopology <<<<<<<<<");
+        try {
+            GridTopology topology = GridTopology.of(size);
+
+            System.out.print("> Testing methods nrLetters and nrWords: ");
+            msgTest = topology.nrLetters() == 21 && topology.nrWords() * 2 == nrWords &&
+                      GridTopology.of(size) == topology ? "OK" : 
+                      "\n\n ERROR: incorrect number of letters or words \n";
+		    System.out.println(msgTest);
+
+            System.out.print("> Testing the positions of the letters and words: ");
+            boolean validTopology = true;
+            int k = 0;
+            for (int i = 0; i < size; i++) {
+                for (int j = 0; j < size; j++) {
+                    validTopology &= topology.isLetter(i, j) == (puzzleGrid[i][j] != '*');
+                    if (topology.isLetter(i, j)) {
+                        validTopology &= topology.letterIndex(i, j) == k &&
+                                         topology.letterCell(k) == i * size + j;
+                        k++;
+                    }
+                    if (topology.rowWord(i, j) >= 0) {
+                        validTopology &= hWords[topology.rowWord(i, j)].charAt(j) ==
+                                         puzzleGrid[i][j];
+                    }
+                    if (topology.colWord(i, j) >= 0) {
+                        validTopology &= vWords[topology.colWord(i, j)].charAt(i) ==
+                                         puzzleGrid[i][j];
+                    }
+                    validTopology &= topology.isCrossing(i, j) == 
+                                     (topology.rowWord(i, j) >= 0 && topology.colWord(i, j) >= 0);
+                }
+            }
+            validTopology &= topology.isDiagonal(1, 3) && !topology.isDiagonal(1, 2);
+            msgTest = validTopology ? "OK" : 
+                      "\n\n ERROR: the topology does not match the grid of the puzzle \n";
+		    System.out.println(msgTest);
+        } catch (Exception e) {
+			msgTest = "\n\n ERROR: Failed because of " + e.toString() + "\n";
+			System.out.println(msgTest);
+		}
+        System.out.println(">>>>>>>>>>>>>>>>>>>>>>><<<<<<<<<<<<<<<<<<<<<<<");
+    }
+
+    /**
+	 * Testa a classe CompactBoard, com grelhas de tamanho 5, 7 e 21:
+	 * - CompactBoard(...), toGrid(), copyInto(...), letterAt(...)
+	 * - toLongs(), static nrLongs(...), swap(...), equals(...), hashCode()
+	 * - letter(...), swapLetters(...), copyFrom(...)
+	 */
+    private static void testCompactBoard() {
+        String msgTest = "";
+        System.out.println("\n>>>>>>>>>>>>>>>>>>>>>>><<<<<<<<<<<<<<<<<<<<<<<");
+        System.out.println(">>>>>>>>>> Testing class CompactBoard <<<<<<<<<");
+        try {
+            for (int largeSize : new int[] {5, 7, 21}) {
+                String[][] words = largePuzzleWords(largeSize);
+                char[][] grid = new Puzzle(largeSize, words[0], words[1]).buildGrid();
+                CompactBoard board = new CompactBoard(grid);
+
+                System.out.print("> Testing the packing of size " + largeSize + ": ");
+                char[][] copy = new char[largeSize][largeSize];
+                board.copyInto(copy);
+                boolean packed = areEqual(grid, board.toGrid()) && areEqual(grid, copy) &&
+                                 board.size() == largeSize &&
+                                 board.toLongs().length == CompactBoard.nrLongs(largeSize);
+                for (int i = 0; i < largeSize; i++) {
+                    for (int j = 0; j < largeSize; j++) {
+                        packed &= board.letterAt(i + 1, j + 1) == grid[i][j];
+                    }
+                }
+                CompactBoard fromLongs = new CompactBoard(largeSize, board.toLongs());
+                packed &= fromLongs.equals(board) && fromLongs.hashCode() == board.hashCode();
+                msgTest = packed ? "OK" : "\n\n ERROR: the grid read is not the one packed \n";
+		        System.out.println(msgTest);
+
+                System.out.print("> Testing method swap of size " + largeSize + ": ");
+                // as mesmas trocas na grelha e no tabuleiro compacto: cada letra com a que
+                // esta 12 letras depois (no long seguinte) e depois trocas aleatorias
+                GridTopology topology = GridTopology.of(largeSize);
+                CompactBoard swapped = new CompactBoard(board);
+                SplittableRandom r = new SplittableRandom(largeSize);
+                boolean sameSwaps = true;
+                for (int n = 0; n < 4 * topology.nrLetters(); n++) {
+                    int k1 = n < topology.nrLetters() ? n : r.nextInt(topology.nrLetters());
+                    int k2 = n < topology.nrLetters() ? (n + 12) % topology.nrLetters() :
+                             r.nextInt(topology.nrLetters());
+                    int i1 = topology.letterCell(k1) / largeSize;
+                    int j1 = topology.letterCell(k1) % largeSize;
+                    int i2 = topology.letterCell(k2) / largeSize;
+                    int j2 = topology.letterCell(k2) % largeSize;
+                    char letter = copy[i1][j1];
+                    copy[i1][j1] = copy[i2][j2];
+                    copy[i2][j2] = letter;
+                    swapped.swap(i1 + 1, j1 + 1, i2 + 1, j2 + 1);
+                    sameSwaps &= swapped.letterAt(i1 + 1, j1 + 1) == copy[i1][j1] &&
+                                 swapped.letterAt(i2 + 1, j2 + 1) == copy[i2][j2];
+                }
+                sameSwaps &= areEqual(copy, swapped.toGrid()) && areEqual(grid, board.toGrid());
+                msgTest = sameSwaps ? "OK" : 
+                          "\n\n ERROR: the swaps of the board differ from the ones of the grid \n";
+		        System.out.println(msgTest);
+
+                System.out.print("> Testing methods equals and hashCode of size " + largeSize +
+                                 ": ");
+                // trocar duas letras diferentes muda o tabuleiro e troca-las outra vez repoe-o
+                CompactBoard other = new CompactBoard(board);
+                other.swap(1, 1, 1, 2);
+                boolean different = !other.equals(board) && other.hashCode() != board.hashCode();
+                other.swap(1, 2, 1, 1);
+                msgTest = different && other.equals(board) && board.equals(other) &&
+                          other.hashCode() == board.hashCode() && !board.equals(swapped) &&
+                          !board.equals(new CompactBoard(puzzleGrid)) && !board.equals(grid) ?
+                          "OK" : "\n\n ERROR: incorrect equals or hashCode \n";
+		        System.out.println(msgTest);
+
+                System.out.print("> Testing methods letter, swapLetters and copyFrom of size " +
+                                 largeSize + ": ");
+                // as letras numeradas linha a linha, trocadas pelo numero e copiadas
+                CompactBoard target = new CompactBoard(grid);
+                boolean byNumber = true;
+                for (int k = 0; k < topology.nrLetters(); k++) {
+                    int cell = topology.letterCell(k);
+                    byNumber &= target.letter(k) == grid[cell / largeSize][cell % largeSize];
+                }
+                target.swapLetters(0, topology.nrLetters() - 1);
+                byNumber &= target.letter(0) == board.letter(topology.nrLetters() - 1) &&
+                            target.letter(topology.nrLetters() - 1) == board.letter(0);
+                target.copyFrom(swapped);
+                byNumber &= target.equals(swapped);
+                target.copyFrom(grid);
+                byNumber &= target.equals(board);
+                msgTest = byNumber ? "OK" : 
+                          "\n\n ERROR: the letters by number or the copies are incorrect \n";
+		        System.out.println(msgTest);
+            }
+        } catch (Exception e) {
+			msgTest = "\n\n ERROR: Failed because of " + e.toString() + "\n";
+			System.out.println(msgTest);
+		}
+        System.out.println(">>>>>>>>>>>>>>>>>>>>>>><<<<<<<<<<<<<<<<<<<<<<<");
+    }
+
+    /**
+	 * Testa os metodos da classe WaffleSolver
+	 * - WaffleSolver (...)
+	 * - minSwaps()
+	 * - getSwaps()
+	 */
+    private static void testWaffleSolver() {
+        String msgTest = "";
+        System.out.println("\n>>>>>>>>>>>>>>>>>>>>>>><<<<<<<<<<<<<<<<<<<<<<<");
+        System.out.println(">>>>>>>>>> Testing class WaffleSolver <<<<<<<<<");
+        try {
+            Puzzle puzzle = new Puzzle(size, hWords, vWords);
+            WaffleSolver solver = new WaffleSolver(puzzle, initialGrid);
+
+            System.out.print("> Testing method minSwaps: ");
+            // o puzzle #313 de wafflegame.net resolve-se em 10 trocas
+            msgTest = solver.minSwaps() == 10 ? "OK" : 
+                      "\n\n ERROR: incorrect minimum swaps. Expected: 10 - Found: " + 
+                      solver.minSwaps() + " \n";
+		    System.out.println(msgTest);
+
+            System.out.print("> Testing method getSwaps: ");
+            char[][] grid = new char[size][];
+            for (int i = 0; i < size; i++) {
+                grid[i] = initialGrid[i].clone();
+            }
+            WaffleGame game = new WaffleGame(puzzle, grid);
+            int[][] swaps = solver.getSwaps();
+            boolean swapsAreValid = swaps.length == solver.minSwaps();
+            for (int[] swap : swaps) {
+                swapsAreValid &= game.swappablePosition(swap[0], swap[1]) &&
+                                 game.swappablePosition(swap[2], swap[3]);
+                game.swap(swap[0], swap[1], swap[2], swap[3]);
+            }
+            msgTest = swapsAreValid && game.puzzleFound() ? "OK" : 
+                      "\n\n ERROR: the swaps do not solve the grid \n";
+		    System.out.println(msgTest);
+
+            System.out.print("> Testing method hint of WaffleGame: ");
+            // seguindo as dicas, o puzzle resolve-se no numero minimo de trocas
+            for (int i = 0; i < size; i++) {
+                grid[i] = initialGrid[i].clone();
+            }
+            game = new WaffleGame(puzzle, grid);
+            int hints = 0;
+            int[] hint = game.hint();
+            while (hint != null && hints <= solver.minSwaps()) {
+                game.swap(hint[0], hint[1], hint[2], hint[3]);
+                hints++;
+                hint = game.hint();
+            }
+            msgTest = game.puzzleFound() && hints == solver.minSwaps() ? "OK" : 
+                      "\n\n ERROR: the hints do not solve the grid in the minimum swaps \n";
+		    System.out.println(msgTest);
+        } catch (Exception e) {
+			msgTest = "\n\n ERROR: Failed because of " + e.toString() + "\n";
+			System.out.println(msgTest);
+		}
+        System.out.println(">>>>>>>>>>>>>>>>>>>>>>><<<<<<<<<<<<<<<<<<<<<<<");
+    }
+
+    /**
+	 * Testa os metodos da classe DictionaryPuzzleGenerator
+	 * - DictionaryPuzzleGenerator (...)
+	 * - nrWords()
+	 * - generate(...)
+	 */
+    private static void testDictionaryPuzzleGenerator() {
+        String msgTest = "";
+        System.out.println("\n>>>>>>>>>>>>>>>>>>>>>>><<<<<<<<<<<<<<<<<<<<<<<");
+        System.out.println(">>> Testing class DictionaryPuzzleGenerator <<<");
+        try {
+            // as palavras do puzzle de teste e algumas que nao servem
+            String[] words = new String[] {"CHORE", "MINUS", "THREE", "COMET", "OWNER", "ENSUE",
+                                           "CHORES", "chore", "CHORE"};
+            DictionaryPuzzleGenerator generator = new DictionaryPuzzleGenerator(size, words);
+
+            System.out.print("> Testing method nrWords: ");
+            msgTest = generator.nrWords() == nrWords ? "OK" : 
+                      "\n\n ERROR: incorrect number of words \n";
+		    System.out.println(msgTest);
+
+            System.out.print("> Testing method generate: ");
+            // o puzzle de teste e o seu transposto
+            List<String[][]> puzzles = generator.generate(10, 1);
+            boolean validPuzzles = puzzles.size() == 2;
+            for (String[][] puzzleWords : puzzles) {
+                validPuzzles &= Puzzle.validWords(size, puzzleWords[0], puzzleWords[1]) &&
+                                Puzzle.overlappedWords(size, puzzleWords[0], puzzleWords[1]);
+            }
+            msgTest = validPuzzles ? "OK" : 
+                      "\n\n ERROR: the generated puzzles are not the expected ones \n";
+		    System.out.println(msgTest);
+        } catch (Exception e) {
+			msgTest = "\n\n ERROR: Failed because of " + e.toString() + "\n";
+			System.out.println(msgTest);
+		}
+        System.out.println(">>>>>>>>>>>>>>>>>>>>>>><<<<<<<<<<<<<<<<<<<<<<<");
+    }
+
+    /**
+	 * Testa a classe PuzzlePack:
+	 * - static write(...) e PuzzlePack(...)
+	 * - nrPuzzles(), getHorizontalWords(...), getVerticalWords(...)
+	 * - verify() e os ficheiros corrompidos, truncados ou que nao sao packs
+	 */
+    private static void testPuzzlePack() {
+        String msgTest = "";
+        System.out.println("\n>>>>>>>>>>>>>>>>>>>>>>><<<<<<<<<<<<<<<<<<<<<<<");
+        System.out.println(">>>>>>>>>> Testing class PuzzlePack <<<<<<<<<<<");
+        try {
+            // uma seccao de tamanho 5 em ingles e uma de tamanho 7 em portugues
+            String[][] largeWords = largePuzzleWords(7);
+            List<List<String[][]>> puzzles = List.of(
+                List.of(new String[][] {hWords, vWords}, new String[][] {vWords, hWords}),
+                List.of(largeWords, new String[][] {largeWords[1], largeWords[0]}, largeWords));
+            Path file = Files.createTempFile("waffle", ".wpak");
+            PuzzlePack.write(file, new int[] {5, 7}, new String[] {PuzzlePack.EN, PuzzlePack.PT},
+                             puzzles);
+
+            System.out.print("> Testing methods write and PuzzlePack: ");
+            PuzzlePack english = new PuzzlePack(file, 5, true);
+            PuzzlePack portuguese = new PuzzlePack(file, 7, false);
+            boolean sameWords = english.nrPuzzles() == 2 && portuguese.nrPuzzles() == 3 &&
+                                Arrays.equals(english.getHorizontalWords(1), vWords) &&
+                                Arrays.equals(english.getVerticalWords(1), hWords) &&
+                                Arrays.equals(portuguese.getHorizontalWords(2), largeWords[0]) &&
+                                Arrays.equals(portuguese.getVerticalWords(2), largeWords[1]);
+            msgTest = sameWords ? "OK" : "\n\n ERROR: the puzzles read are not the ones written \n";
+		    System.out.println(msgTest);
+
+            System.out.print("> Testing method verify: ");
+            msgTest = english.verify() && portuguese.verify() ? "OK" : 
+                      "\n\n ERROR: the checksums of an intact pack do not match \n";
+		    System.out.println(msgTest);
+
+            System.out.print("> Testing a section that is not in the pack: ");
+            msgTest = packError(file, 7, true).startsWith("no puzzles of size 7") ? "OK" : 
+                      "\n\n ERROR: a missing section was opened \n";
+		    System.out.println(msgTest);
+
+            System.out.print("> Testing method verify with a corrupted pack: ");
+            // a ultima letra do ultimo puzzle de tamanho 7 passa a ser outra
+            byte[] bytes = Files.readAllBytes(file);
+            bytes[bytes.length - 1]++;
+            Path corrupted = Files.createTempFile("waffle", ".wpak");
+            Files.write(corrupted, bytes);
+            msgTest = new PuzzlePack(corrupted, 5, true).verify() &&
+                      !new PuzzlePack(corrupted, 7, false).verify() ? "OK" : 
+                      "\n\n ERROR: the corruption was not detected \n";
+		    System.out.println(msgTest);
+
+            System.out.print("> Testing a truncated pack: ");
+            Files.write(corrupted, Arrays.copyOf(bytes, bytes.length - 1));
+            msgTest = packError(corrupted, 7, false).startsWith("truncated puzzle pack") &&
+                      new PuzzlePack(corrupted, 5, true).verify() ? "OK" : 
+                      "\n\n ERROR: the truncated section was opened \n";
+		    System.out.println(msgTest);
+
+            System.out.print("> Testing a pack with a corrupted section table: ");
+            // mais seccoes do que as que cabem no ficheiro
+            byte[] wrong = Files.readAllBytes(file);
+            wrong[6] = 0x7F;
+            Files.write(corrupted, wrong);
+            boolean badTable = packError(corrupted, 5, true).startsWith("corrupted section table");
+            // um numero negativo de puzzles na primeira seccao
+            wrong = Files.readAllBytes(file);
+            wrong[8 + 4] = (byte) 0xFF;
+            Files.write(corrupted, wrong);
+            boolean badHeader = packError(corrupted, 5, true).startsWith("corrupted section");
+            // os puzzles da primeira seccao comecam dentro dos cabecalhos
+            wrong = Files.readAllBytes(file);
+            Arrays.fill(wrong, 8 + 8, 8 + 16, (byte) 0);
+            Files.write(corrupted, wrong);
+            badHeader &= packError(corrupted, 5, true).startsWith("corrupted section header");
+            // um offset tao grande que a soma com o tamanho dos puzzles da a volta
+            wrong = Files.readAllBytes(file);
+            wrong[8 + 8] = 0x7F;
+            Files.write(corrupted, wrong);
+            badHeader &= packError(corrupted, 5, true).startsWith("truncated puzzle pack");
+            msgTest = badTable && badHeader ? "OK" : 
+                      "\n\n ERROR: a corrupted section table or header was opened \n";
+		    System.out.println(msgTest);
+
+            System.out.print("> Testing a file that is not a pack: ");
+            Files.write(corrupted, "CHORE MINUS THREE".getBytes());
+            boolean notPack = packError(corrupted, 5, true).startsWith("not a puzzle pack");
+            Files.write(corrupted, new byte[3]);
+            notPack &= packError(corrupted, 5, true).startsWith("not a puzzle pack");
+            msgTest = notPack ? "OK" : "\n\n ERROR: a file that is not a pack was opened \n";
+		    System.out.println(msgTest);
+            Files.delete(corrupted);
+            Files.delete(file);
+        } catch (Exception e) {
+			msgTest = "\n\n ERROR: Failed because of " + e.toString() + "\n";
+			System.out.println(msgTest);
+		}
+        System.out.println(">>>>>>>>>>>>>>>>>>>>>>><<<<<<<<<<<<<<<<<<<<<<<");
+    }
+
+    /**
+	 * Funcao auxiliar que abre uma seccao de um pack que deve estar errada
+     * @param file o ficheiro do pack
+     * @param largeSize o tamanho das palavras da seccao
+     * @param inEnglish se a seccao e em ingles
+     * @return a mensagem da IOException lancada ou "" se a seccao abriu
+	 */
+    private static String packError(Path file, int largeSize, boolean inEnglish) {
+        String message = "";
+        try {
+            new PuzzlePack(file, largeSize, inEnglish);
+        } catch (IOException e) {
+            message = e.getMessage();
+        }
+        return message;
+    }
+
+    /**
+	 * Testa a classe BoardPool:
+	 * - BoardPool(...), take(), available()
+	 * - hits(), misses(), failures(), close()
+	 */
+    private static void testBoardPool() {
+        String msgTest = "";
+        System.out.println("\n>>>>>>>>>>>>>>>>>>>>>>><<<<<<<<<<<<<<<<<<<<<<<");
+        System.out.println(">>>>>>>>>>> Testing class BoardPool <<<<<<<<<<<");
+        try {
+            Puzzle puzzle = new Puzzle(size, hWords, vWords);
+
+            System.out.print("> Testing methods take and available: ");
+            try (BoardPool pool = new BoardPool(() -> puzzle, 2, 4)) {
+                boolean refilled = waitForBoards(pool, 4);
+                // o segundo tabuleiro tirado deixa o pool no low watermark
+                pool.take();
+                BoardPool.Board board = pool.take();
+                new WaffleGame(board.puzzle(), board.grid());
+                msgTest = refilled && board.puzzle() == puzzle && pool.hits() == 2 &&
+                          pool.misses() == 0 && waitForBoards(pool, 4) ? "OK" : 
+                          "\n\n ERROR: the pool was not refilled to its high watermark \n";
+            }
+		    System.out.println(msgTest);
+
+            System.out.print("> Testing a pool with a low watermark of 0: ");
+            try (BoardPool pool = new BoardPool(() -> puzzle, 0, 2)) {
+                boolean refilled = waitForBoards(pool, 2);
+                pool.take();
+                pool.take();
+                msgTest = refilled && waitForBoards(pool, 2) && pool.misses() == 0 ? "OK" : 
+                          "\n\n ERROR: the empty pool was not refilled \n";
+            }
+		    System.out.println(msgTest);
+
+            System.out.print("> Testing a supplier that fails: ");
+            // as duas primeiras chamadas falham e as seguintes dao o puzzle
+            java.util.concurrent.atomic.AtomicInteger calls =
+                new java.util.concurrent.atomic.AtomicInteger();
+            try (BoardPool pool = new BoardPool(() -> {
+                     if (calls.incrementAndGet() <= 2) {
+                         throw new IllegalStateException("no puzzles yet");
+                     }
+                     return puzzle;
+                 }, 1, 3)) {
+                msgTest = waitForBoards(pool, 3) && pool.failures() == 2 ? "OK" : 
+                          "\n\n ERROR: the pool stopped refilling after a failure \n";
+            }
+		    System.out.println(msgTest);
+
+            System.out.print("> Testing method close: ");
+            BoardPool pool = new BoardPool(() -> puzzle, 1, 3);
+            waitForBoards(pool, 3);
+            pool.close();
+            for (int k = 0; k < 4; k++) {
+                pool.take();
+            }
+            Thread.sleep(50);
+            msgTest = pool.available() == 0 && pool.hits() == 3 && pool.misses() == 1 ? "OK" : 
+                      "\n\n ERROR: the closed pool was refilled \n";
+		    System.out.println(msgTest);
+        } catch (Exception e) {
+			msgTest = "\n\n ERROR: Failed because of " + e.toString() + "\n";
+			System.out.println(msgTest);
+		}
+        System.out.println(">>>>>>>>>>>>>>>>>>>>>>><<<<<<<<<<<<<<<<<<<<<<<");
+    }
+
+    /**
+	 * Funcao auxiliar que espera, ate 5 segundos, que um pool tenha um dado numero de tabuleiros
+     * @param pool o pool
+     * @param boards o numero de tabuleiros
+     * @return true se o pool chegou a esse numero de tabuleiros
+	 */
+    private static boolean waitForBoards(BoardPool pool, int boards) throws InterruptedException {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (pool.available() != boards && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        return pool.available() == boards;
+    }
+
+    /**
+	 * Testa a classe SessionJournal:
+	 * - snapshot(...), swap(...), end(...)
+	 * - static recover(...)
+	 */
+    private static void testSessionJournal() {
+        String msgTest = "";
+        System.out.println("\n>>>>>>>>>>>>>>>>>>>>>>><<<<<<<<<<<<<<<<<<<<<<<");
+        System.out.println(">>>>>>>>> Testing class SessionJournal <<<<<<<<");
+        try {
+            Path file = Files.createTempFile("waffle", ".wjnl");
+            Files.delete(file);
+            Puzzle puzzle = new Puzzle(size, hWords, vWords);
+            char[][] grid = new char[size][];
+            for (int i = 0; i < size; i++) {
+                grid[i] = puzzleGrid[i].clone();
+            }
+            // duas trocas a partir da solucao e um jogo terminado
+            WaffleGame game = new WaffleGame(puzzle, grid);
+            try (SessionJournal journal = SessionJournal.open(file)) {
+                journal.snapshot(1, game);
+                journal.snapshot(2, new WaffleGame(puzzle, puzzle.buildGrid()));
+                game.swap(1, 2, 3, 4);
+                journal.swap(1, 1, 2, 3, 4);
+                game.swap(5, 2, 1, 4);
+                journal.swap(1, 5, 2, 1, 4);
+                journal.end(2);
+            }
+
+            System.out.print("> Testing method recover: ");
+            // as trocas repetidas nao voltam a contar em GameMetrics
+            GameMetrics metrics = GameMetrics.get();
+            long swaps = metrics.getSwaps();
+            long started = metrics.getGamesStarted();
+            long[] atEnd = metrics.getRemainingSwapsAtEnd();
+            Map<Long, WaffleGame> games = SessionJournal.recover(file);
+            WaffleGame recovered = games.get(1L);
+            msgTest = games.size() == 1 && recovered != null &&
+                      recovered.toString().equals(game.toString()) &&
+                      recovered.remainingSwaps() == game.remainingSwaps() &&
+                      recovered.nrMoves() == 2 && metrics.getSwaps() == swaps &&
+                      metrics.getGamesStarted() == started &&
+                      Arrays.equals(metrics.getRemainingSwapsAtEnd(), atEnd) ? "OK" : 
+                      "\n\n ERROR: the recovered game is not the recorded one \n";
+		    System.out.println(msgTest);
+
+            System.out.print("> Testing method recover after restart: ");
+            recovered.restart();
+            msgTest = recovered.puzzleFound() ? "OK" : 
+                      "\n\n ERROR: the recovered game does not restart to its initial grid \n";
+		    System.out.println(msgTest);
+            Files.delete(file);
+        } catch (Exception e) {
+			msgTest = "\n\n ERROR: Failed because of " + e.toString() + "\n";
+			System.out.println(msgTest);
+		}
+        System.out.println(">>>>>>>>>>>>>>>>>>>>>>><<<<<<<<<<<<<<<<<<<<<<<");
+    }
+
+    /**
+	 * Testa o protocolo da classe WaffleServer, sem sockets:
+	 * - execute(...) com NEW, SWAP, BOARD, RESTART, HINT e END
+	 * - comandos mal formados e ids desconhecidos
+	 * - evictIdle(...), nrSessions()
+	 */
+    private static void testWaffleServer() {
+        String msgTest = "";
+        System.out.println("\n>>>>>>>>>>>>>>>>>>>>>>><<<<<<<<<<<<<<<<<<<<<<<");
+        System.out.println(">>>>>>>>>> Testing class WaffleServer <<<<<<<<<");
+        try {
+            WaffleServer server = new WaffleServer();
+
+            System.out.print("> Testing commands NEW and BOARD: ");
+            String id = server.execute("NEW 5 EN").substring(3);
+            String[] board = server.execute("BOARD " + id).split(" ");
+            String[] rows = board[1].split("/");
+            msgTest = board.length == 4 && board[0].equals("OK") && rows.length == size &&
+                      rows[1].matches("[A-Z]\\*[A-Z]\\*[A-Z]") &&
+                      board[2].matches("([GY-]\\*?)+(/([GY-]\\*?)+){4}") &&
+                      board[3].equals("15") && server.nrSessions() == 1 ? "OK" : 
+                      "\n\n ERROR: incorrect answer to BOARD: " + String.join(" ", board) + " \n";
+		    System.out.println(msgTest);
+
+            System.out.print("> Testing commands HINT and SWAP until the game is won: ");
+            String answer = "OK 15 PLAYING";
+            while (answer.endsWith("PLAYING")) {
+                answer = server.execute("SWAP " + id + server.execute("HINT " + id).substring(2));
+            }
+            msgTest = answer.equals("OK 5 WON") && server.execute("BOARD " + id).matches(
+                          "OK [A-Z*/]+ G[G*/]+ 5") ? "OK" : 
+                      "\n\n ERROR: the hints did not win the game: " + answer + " \n";
+		    System.out.println(msgTest);
+
+            System.out.print("> Testing commands HINT and SWAP after the game is over: ");
+            msgTest = server.execute("HINT " + id).equals("ERR the game is over") &&
+                      server.execute("SWAP " + id + " 1 1 1 2").equals("ERR the game is over") ?
+                      "OK" : "\n\n ERROR: a game over was played \n";
+		    System.out.println(msgTest);
+
+            System.out.print("> Testing command RESTART: ");
+            String[] restarted = server.execute("BOARD " + id).split(" ");
+            msgTest = server.execute("RESTART " + id).equals("OK 15") &&
+                      !server.execute("BOARD " + id).split(" ")[1].equals(restarted[1]) &&
+                      server.execute("HINT " + id).matches("OK( [1-5]){4}") ? "OK" : 
+                      "\n\n ERROR: the game was not restarted \n";
+		    System.out.println(msgTest);
+
+            System.out.print("> Testing command SWAP with positions that cannot be swapped: ");
+            msgTest = server.execute("SWAP " + id + " 2 2 1 1").equals(
+                          "ERR positions cannot be swapped") &&
+                      server.execute("SWAP " + id + " 1 1 1 1").equals(
+                          "ERR positions cannot be swapped") &&
+                      server.execute("SWAP " + id + " 1 1 9 9").equals(
+                          "ERR positions cannot be swapped") ? "OK" : 
+                      "\n\n ERROR: an invalid swap was made \n";
+		    System.out.println(msgTest);
+
+            System.out.print("> Testing command END and unknown ids: ");
+            msgTest = server.execute("END " + id).equals("OK") && server.nrSessions() == 0 &&
+                      server.execute("END " + id).equals("ERR unknown game " + id) &&
+                      server.execute("BOARD " + id).equals("ERR unknown game " + id) &&
+                      server.execute("SWAP 999 1 1 1 3").equals("ERR unknown game 999") &&
+                      server.execute("HINT 999").equals("ERR unknown game 999") &&
+                      server.execute("RESTART 999").equals("ERR unknown game 999") ? "OK" : 
+                      "\n\n ERROR: an unknown game was found \n";
+		    System.out.println(msgTest);
+
+            System.out.print("> Testing malformed commands: ");
+            boolean rejected = server.execute("FOO 1").equals("ERR unknown command FOO") &&
+                               server.execute("").equals("ERR unknown command ") &&
+                               server.execute("NEW 6 EN").equals(
+                                   "ERR no puzzles of size 6 in EN") &&
+                               server.execute("NEW 5 FR").equals(
+                                   "ERR no puzzles of size 5 in FR");
+            for (String command : new String[] {"NEW", "NEW 5", "NEW five EN", "SWAP 1 1 1 1",
+                                                "SWAP x 1 1 1 3", "BOARD", "HINT one", "END"}) {
+                rejected &= server.execute(command).equals("ERR invalid arguments: " + command);
+            }
+            msgTest = rejected && server.nrSessions() == 0 ? "OK" : 
+                      "\n\n ERROR: a malformed command was accepted \n";
+		    System.out.println(msgTest);
+
+            System.out.print("> Testing method evictIdle: ");
+            String idle = server.execute("NEW 7 PT").substring(3);
+            Thread.sleep(2);
+            boolean recent = server.evictIdle(60_000) == 0 && server.nrSessions() == 1;
+            msgTest = recent && server.evictIdle(0) == 1 && server.nrSessions() == 0 &&
+                      server.execute("BOARD " + idle).equals("ERR unknown game " + idle) ? "OK" : 
+                      "\n\n ERROR: the idle game was not ended \n";
+		    System.out.println(msgTest);
+        } catch (Exception e) {
+			msgTest = "\n\n ERROR: Failed because of " + e.toString() + "\n";
+			System.out.println(msgTest);
+		}
+        System.out.println(">>>>>>>>>>>>>>>>>>>>>>><<<<<<<<<<<<<<<<<<<<<<<");
+    }
+
+    /**
+	 * Testa a classe PuzzleTables, comparando-a com PuzzleGenerator:
+	 * - static of(...)
+	 * - nrPuzzles(), getHorizontalWords(...), getVerticalWords(...)
+	 * - getRandomSequenceIds()
+	 */
+    private static void testPuzzleTables() {
+        String msgTest = "";
+        System.out.println("\n>>>>>>>>>>>>>>>>>>>>>>><<<<<<<<<<<<<<<<<<<<<<<");
+        System.out.println(">>>>>>>>> Testing class PuzzleTables <<<<<<<<<<");
+        try {
+            System.out.print("> Testing the puzzles of every size and language: ");
+            boolean same = true;
+            for (int size = 5; size <= 7; size += 2) {
+                for (boolean inEnglish : new boolean[] {true, false}) {
+                    PuzzleGenerator generator = new PuzzleGenerator(size, inEnglish);
+                    PuzzleTables tables = PuzzleTables.of(size, inEnglish);
+                    same = same && tables.nrPuzzles() == generator.nrPuzzles();
+                    for (int id = 0; same && id < tables.nrPuzzles(); id++) {
+                        same = Arrays.equals(tables.getHorizontalWords(id),
+                                             generator.getHorizontalWords(id)) &&
+                               Arrays.equals(tables.getVerticalWords(id),
+                                             generator.getVerticalWords(id));
+                    }
+                }
+            }
+            msgTest = same ? "OK" : "\n\n ERROR: the puzzles differ from PuzzleGenerator \n";
+		    System.out.println(msgTest);
+
+            System.out.print("> Testing getRandomSequenceIds(): ");
+            int[] ids = PuzzleTables.of(5, true).getRandomSequenceIds();
+            Arrays.sort(ids);
+            boolean all = ids.length == 13;
+            for (int id = 0; all && id < ids.length; id++) {
+                all = ids[id] == id;
+            }
+            msgTest = all ? "OK" : "\n\n ERROR: the ids are not a permutation of the puzzles \n";
+		    System.out.println(msgTest);
+        } catch (Exception e) {
+			msgTest = "\n\n ERROR: Failed because of " + e.toString() + "\n";
+			System.out.println(msgTest);
+		}
+        System.out.println(">>>>>>>>>>>>>>>>>>>>>>><<<<<<<<<<<<<<<<<<<<<<<");
+    }
+
+    /**
+	 * Testa a classe DifficultyIndex, com os puzzles de tamanho 5 em ingles:
+	 * - static build(...)
+	 * - puzzle(...), difficulty(...), score(...)
+	 * - static write(...), static read(...)
+	 */
+    private static void testDifficultyIndex() {
+        String msgTest = "";
+        System.out.println("\n>>>>>>>>>>>>>>>>>>>>>>><<<<<<<<<<<<<<<<<<<<<<<");
+        System.out.println(">>>>>>>> Testing class DifficultyIndex <<<<<<<<");
+        try {
+            PuzzleGenerator generator = new PuzzleGenerator(size, true);
+            List<String[][]> puzzles = new ArrayList<>();
+            for (int id = 0; id < generator.nrPuzzles(); id++) {
+                puzzles.add(new String[][] {generator.getHorizontalWords(id),
+                                            generator.getVerticalWords(id)});
+            }
+            DifficultyIndex index = DifficultyIndex.build(size, PuzzlePack.EN, puzzles, 313);
+
+            System.out.print("> Testing method wrongPositions: ");
+            // as pistas amarelas calculadas sem jogo sao as de WaffleGame
+            boolean sameClues = true;
+            SplittableRandom r = new SplittableRandom(313);
+            for (int id = 0; id < puzzles.size(); id++) {
+                Puzzle puzzle = new Puzzle(size, puzzles.get(id)[0], puzzles.get(id)[1]);
+                char[][] grid = puzzle.getShuffledGrid(r, new char[size][size]);
+                boolean[][] wrongPos = new boolean[size][size];
+                DifficultyIndex.wrongPositions(puzzle.buildGrid(), grid, puzzle.topology(),
+                                               wrongPos);
+                WaffleGame game = new WaffleGame(puzzle, grid);
+                for (int i = 1; i <= size; i++) {
+                    for (int j = 1; j <= size; j++) {
+                        sameClues &= !game.validPosition(i, j) || wrongPos[i - 1][j - 1] ==
+                                     (game.clue(i, j) == LetterStatus.WRONG_POS);
+                    }
+                }
+            }
+            msgTest = sameClues ? "OK" : "\n\n ERROR: the yellow clues are not WaffleGame's \n";
+		    System.out.println(msgTest);
+
+            System.out.print("> Testing method measure: ");
+            // o jogador guloso nunca usa menos trocas do que o minimo
+            boolean measured = true;
+            for (int id = 0; id < puzzles.size(); id++) {
+                Puzzle puzzle = new Puzzle(size, puzzles.get(id)[0], puzzles.get(id)[1]);
+                double[] measures = DifficultyIndex.measure(puzzle, 313 + id);
+                measured &= measures.length == 3 && measures[0] >= 0 && measures[0] <= 1 &&
+                            measures[1] >= 0 && measures[2] >= 0;
+            }
+            msgTest = measured ? "OK" : "\n\n ERROR: the measures are out of their ranges \n";
+		    System.out.println(msgTest);
+
+            System.out.print("> Testing method build: ");
+            // cada puzzle aparece uma vez, do mais facil para o mais dificil
+            boolean[] seen = new boolean[puzzles.size()];
+            boolean ranked = index.nrPuzzles() == puzzles.size() && 
+                             index.nrPuzzles(Difficulty.HARD) > 0;
+            float lastScore = 0;
+            for (Difficulty difficulty : Difficulty.values()) {
+                for (int k = 0; k < index.nrPuzzles(difficulty); k++) {
+                    int id = index.puzzle(difficulty, k);
+                    ranked &= !seen[id] && index.difficulty(id) == difficulty &&
+                              index.score(id) >= lastScore;
+                    seen[id] = true;
+                    lastScore = index.score(id);
+                }
+            }
+            msgTest = ranked ? "OK" : "\n\n ERROR: the puzzles are not ranked by difficulty \n";
+		    System.out.println(msgTest);
+
+            System.out.print("> Testing methods write and read: ");
+            Path file = Files.createTempFile("waffle", ".wdix");
+            DifficultyIndex.write(file, List.of(index));
+            DifficultyIndex read = DifficultyIndex.read(file, size, true);
+            boolean sameIndex = read.nrPuzzles() == index.nrPuzzles();
+            for (int id = 0; id < index.nrPuzzles(); id++) {
+                sameIndex &= read.difficulty(id) == index.difficulty(id) &&
+                             read.score(id) == index.score(id);
+            }
+            msgTest = sameIndex ? "OK" : "\n\n ERROR: the index read is not the one written \n";
+		    System.out.println(msgTest);
+
+            System.out.print("> Testing method read with corrupted indexes: ");
+            // mais seccoes do que as que cabem no ficheiro
+            Path corrupted = Files.createTempFile("waffle", ".wdix");
+            byte[] wrong = Files.readAllBytes(file);
+            wrong[6] = 0x7F;
+            Files.write(corrupted, wrong);
+            boolean rejected = indexError(corrupted).startsWith("corrupted section table");
+            // um numero negativo de puzzles
+            wrong = Files.readAllBytes(file);
+            wrong[8 + 4] = (byte) 0xFF;
+            Files.write(corrupted, wrong);
+            rejected &= indexError(corrupted).startsWith("corrupted section header");
+            // mais puzzles faceis do que puzzles
+            wrong = Files.readAllBytes(file);
+            wrong[24] = 0x7F;
+            Files.write(corrupted, wrong);
+            rejected &= indexError(corrupted).startsWith("corrupted section in");
+            // o primeiro id repete o segundo, os ids deixam de ser uma permutacao
+            wrong = Files.readAllBytes(file);
+            System.arraycopy(wrong, 32 + 4, wrong, 32, 4);
+            Files.write(corrupted, wrong);
+            rejected &= indexError(corrupted).startsWith("corrupted section in");
+            msgTest = rejected ? "OK" : "\n\n ERROR: a corrupted index was read \n";
+		    System.out.println(msgTest);
+            Files.delete(corrupted);
+            Files.delete(file);
+        } catch (Exception e) {
+			msgTest = "\n\n ERROR: Failed because of " + e.toString() + "\n";
+			System.out.println(msgTest);
+		}
+        System.out.println(">>>>>>>>>>>>>>>>>>>>>>><<<<<<<<<<<<<<<<<<<<<<<");
+    }
+
+    /**
+	 * Funcao auxiliar que le um indice de dificuldade que deve estar errado
+     * @param file o ficheiro do indice, com os puzzles de tamanho size em ingles
+     * @return a mensagem da IOException lancada ou "" se o indice foi lido
+	 */
+    private static String indexError(Path file) {
+        String message = "";
+        try {
+            DifficultyIndex.read(file, size, true);
+        } catch (IOException e) {
+            message = e.getMessage();
+        }
+        return message;
+    }
+
+    /**
+	 * Testa a classe FrameTimeCounter:
+	 * - record(...), frames(), meanMillis(), percentileMillis(...), maxMillis()
+	 */
+    private static void testFrameTimeCounter() {
+        String msgTest = "";
+        System.out.println("\n>>>>>>>>>>>>>>>>>>>>>>><<<<<<<<<<<<<<<<<<<<<<<");
+        System.out.println(">>>>>>> Testing class FrameTimeCounter <<<<<<<<");
+        try {
+            // 99 frames de 1 ms e um de 80 ms
+            FrameTimeCounter counter = new FrameTimeCounter();
+            for (int k = 0; k < 99; k++) {
+                counter.record(1_000_000);
+            }
+            counter.record(80_000_000);
+
+            System.out.print("> Testing the statistics: ");
+            msgTest = counter.frames() == 100 && Math.abs(counter.meanMillis() - 1.79) < 1e-9 &&
+                      counter.percentileMillis(50) <= 1.0625 &&
+                      counter.percentileMillis(99) <= 1.0625 &&
+                      counter.percentileMillis(100) == 80 && counter.maxMillis() == 80 ? "OK" : 
+                      "\n\n ERROR: incorrect frame time statistics: " + counter + " \n";
+		    System.out.println(msgTest);
+        } catch (Exception e) {
+			msgTest = "\n\n ERROR: Failed because of " + e.toString() + "\n";
+			System.out.println(msgTest);
+		}
+        System.out.println(">>>>>>>>>>>>>>>>>>>>>>><<<<<<<<<<<<<<<<<<<<<<<");
+    }
+
+    /**
+	 * Testa a classe ScreenCache:
+	 * - preload(...), switchTo(...), isPreloaded(...), switchTimes()
+	 */
+    private static void testScreenCache() {
+        String msgTest = "";
+        System.out.println("\n>>>>>>>>>>>>>>>>>>>>>>><<<<<<<<<<<<<<<<<<<<<<<");
+        System.out.println(">>>>>>>>> Testing class ScreenCache <<<<<<<<<<");
+        try {
+            // cada ecra e um contador: [numero de vezes carregado, numero de resets]
+            Map<String, int[]> loads = new java.util.concurrent.ConcurrentHashMap<>();
+            ScreenCache<int[]> cache = new ScreenCache<>(name -> {
+                int[] screen = loads.computeIfAbsent(name, n -> new int[2]);
+                screen[0]++;
+                return screen;
+            }, screen -> screen[1]++);
+            cache.preload("mainMenu.fxml", "waffle.fxml", "finalScreen.fxml");
+
+            System.out.print("> Testing the screens preloaded: ");
+            int[] waffle = cache.switchTo("waffle.fxml");
+            int[] again = cache.switchTo("waffle.fxml");
+            msgTest = cache.isPreloaded("finalScreen.fxml") && waffle == again &&
+                      waffle[0] == 1 && waffle[1] == 2 ? "OK" :
+                      "\n\n ERROR: the preloaded screen was not reused and reset \n";
+		    System.out.println(msgTest);
+
+            System.out.print("> Testing a screen not preloaded: ");
+            int[] other = cache.switchTo("other.fxml");
+            msgTest = other[0] == 1 && other[1] == 1 && cache.isPreloaded("other.fxml") &&
+                      cache.switchTo("other.fxml") == other && other[0] == 1 &&
+                      cache.switchTimes().frames() == 4 ? "OK" :
+                      "\n\n ERROR: the screen not preloaded was not loaded once \n";
+		    System.out.println(msgTest);
+        } catch (Exception e) {
+			msgTest = "\n\n ERROR: Failed because of " + e.toString() + "\n";
+			System.out.println(msgTest);
+		}
+        System.out.println(">>>>>>>>>>>>>>>>>>>>>>><<<<<<<<<<<<<<<<<<<<<<<");
+    }
+
+    /**
+	 * Testa as classes LatencyHistogram e GameMetrics:
+	 * - record(...), count(), meanNanos(), percentileNanos(...), maxNanos()
+	 * - static get(), static register() e as medidas de um jogo ganho
+	 */
+    private static void testGameMetrics() {
+        String msgTest = "";
+        System.out.println("\n>>>>>>>>>>>>>>>>>>>>>>><<<<<<<<<<<<<<<<<<<<<<<");
+        System.out.println(">>>>>>>>> Testing class GameMetrics <<<<<<<<<<");
+        try {
+            System.out.print("> Testing LatencyHistogram: ");
+            LatencyHistogram histogram = new LatencyHistogram();
+            for (long nanos = 1; nanos <= 1000; nanos++) {
+                histogram.record(nanos);
+            }
+            msgTest = histogram.count() == 1000 && histogram.meanNanos() == 500.5 &&
+                      histogram.maxNanos() == 1000 && histogram.percentileNanos(50) == 511 &&
+                      histogram.percentileNanos(100) == 1000 ? "OK" :
+                      "\n\n ERROR: incorrect histogram statistics \n";
+		    System.out.println(msgTest);
+
+            System.out.print("> Testing the resolution of LatencyHistogram: ");
+            // os percentis ficam a menos de 1/16 dos tempos, mesmo em milissegundos
+            boolean resolved = true;
+            for (long nanos : new long[] {17, 1_000_000, 5_000_000, 8_390_000, 16_700_000,
+                                          123_456_789_000L}) {
+                LatencyHistogram single = new LatencyHistogram();
+                single.record(nanos);
+                single.record(2 * nanos);
+                long p50 = single.percentileNanos(50);
+                resolved &= nanos <= p50 && p50 <= nanos + nanos / 16;
+            }
+            msgTest = resolved ? "OK" : "\n\n ERROR: the percentiles are too far from the times \n";
+		    System.out.println(msgTest);
+
+            // um jogo que se ganha com uma so troca
+            GameMetrics metrics = GameMetrics.get();
+            long started = metrics.getGamesStarted();
+            long won = metrics.getGamesWon();
+            long swaps = metrics.getSwaps();
+            Puzzle puzzle = PuzzleTables.of(5, true).puzzle(0);
+            char[][] grid = puzzle.getShuffledGrid(new SplittableRandom(7), new char[5][5], 1);
+            // so newMatch conta um jogo comecado, construir o WaffleGame nao
+            WaffleGame game = new WaffleGame(puzzle, grid);
+            boolean builtNotStarted = metrics.getGamesStarted() == started;
+            game.newMatch(grid);
+            int[] hint = game.hint();
+            game.swap(hint[0], hint[1], hint[2], hint[3]);
+            long[] atEnd = metrics.getRemainingSwapsAtEnd();
+
+            System.out.print("> Testing the measures of a game won: ");
+            msgTest = game.puzzleFound() && builtNotStarted &&
+                      metrics.getGamesStarted() == started + 1 &&
+                      metrics.getGamesWon() == won + 1 && metrics.getSwaps() == swaps + 1 &&
+                      atEnd.length > game.remainingSwaps() && atEnd[game.remainingSwaps()] > 0 &&
+                      metrics.getShuffleMaxNanos() > 0 ? "OK" :
+                      "\n\n ERROR: the game won was not measured \n";
+		    System.out.println(msgTest);
+
+            System.out.print("> Testing the MBean: ");
+            GameMetrics.register();
+            Object read = ManagementFactory.getPlatformMBeanServer()
+                              .getAttribute(new ObjectName(GameMetrics.NAME), "GamesWon");
+            msgTest = !GameMetrics.register() && read.equals(metrics.getGamesWon()) ? "OK" :
+                      "\n\n ERROR: the MBean does not publish the measures \n";
+		    System.out.println(msgTest);
+        } catch (Exception e) {
+			msgTest = "\n\n ERROR: Failed because of " + e.toString() + "\n";
+			System.out.println(msgTest);
+		}
+        System.out.println(">>>>>>>>>>>>>>>>>>>>>>><<<<<<<<<<<<<<<<<<<<<<<");
+    }
+
+    /**
+	 * Testa os eventos de GameEvents e Puzzle.fingerprint():
+	 * - os eventos waffle.Swap, waffle.Shuffle e waffle.ClueEvaluation de uma gravacao que
+	 *   os ativa
+	 */
+    private static void testGameEvents() {
+        String msgTest = "";
+        System.out.println("\n>>>>>>>>>>>>>>>>>>>>>>><<<<<<<<<<<<<<<<<<<<<<<");
+        System.out.println(">>>>>>>>> Testing class GameEvents <<<<<<<<<<<");
+        try {
+            System.out.print("> Testing fingerprint(): ");
+            Puzzle puzzle = PuzzleTables.of(5, true).puzzle(0);
+            msgTest = puzzle.fingerprint() == PuzzleTables.of(5, true).puzzle(0).fingerprint() &&
+                      puzzle.fingerprint() != PuzzleTables.of(5, true).puzzle(1).fingerprint() ?
+                      "OK" : "\n\n ERROR: the fingerprint does not identify the puzzle \n";
+		    System.out.println(msgTest);
+
+            // uma gravacao com os eventos das trocas e das baralhacoes
+            Path file = Files.createTempFile("waffle", ".jfr");
+            try (Recording recording = new Recording()) {
+                recording.enable("waffle.Swap");
+                recording.enable("waffle.Shuffle");
+                recording.enable("waffle.ClueEvaluation");
+                recording.start();
+                WaffleGame game = new WaffleGame(puzzle, puzzle.getShuffledGrid(11));
+                int[] hint = game.hint();
+                game.swap(hint[0], hint[1], hint[2], hint[3]);
+                game.clueAll(new LetterStatus[5][5]);
+                recording.stop();
+                recording.dump(file);
+            }
+            int swaps = 0;
+            int shuffles = 0;
+            int evaluations = 0;
+            for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+                if (event.getInt("size") == 5 && event.getLong("puzzleId") == puzzle.fingerprint()) {
+                    swaps += event.getEventType().getName().equals("waffle.Swap") ? 1 : 0;
+                    shuffles += event.getEventType().getName().equals("waffle.Shuffle") ? 1 : 0;
+                    evaluations += event.getEventType().getName()
+                                        .equals("waffle.ClueEvaluation") ? 1 : 0;
+                }
+            }
+            Files.delete(file);
+
+            System.out.print("> Testing the events recorded: ");
+            // uma avaliacao ao comecar o jogo e outra em clueAll
+            msgTest = swaps == 1 && shuffles == 1 && evaluations == 2 ? "OK" :
+                      "\n\n ERROR: expected 1 swap, 1 shuffle and 2 clue evaluations - Found: " +
+                      swaps + ", " + shuffles + " and " + evaluations + " \n";
+		    System.out.println(msgTest);
+        } catch (Exception e) {
+			msgTest = "\n\n ERROR: Failed because of " + e.toString() + "\n";
+			System.out.println(msgTest);
+		}
+        System.out.println(">>>>>>>>>>>>>>>>>>>>>>><<<<<<<<<<<<<<<<<<<<<<<");
+    }
+
+    /**
+	 * Testa a classe GameSimulator, com os puzzles de tamanho 5 em ingles:
+	 * - simulate(...) com as estrategias RANDOM, GREEDY e OPTIMAL
+	 * - GameSimulator(...) com um limite de trocas, swapBudget()
+	 */
+    private static void testGameSimulator() {
+        String msgTest = "";
+        System.out.println("\n>>>>>>>>>>>>>>>>>>>>>>><<<<<<<<<<<<<<<<<<<<<<<");
+        System.out.println(">>>>>>>> Testing class GameSimulator <<<<<<<<<");
+        try {
+            PuzzleTables tables = PuzzleTables.of(5, true);
+            Puzzle[] puzzles = new Puzzle[tables.nrPuzzles()];
+            for (int id = 0; id < puzzles.length; id++) {
+                puzzles[id] = tables.puzzle(id);
+            }
+            GameSimulator simulator = new GameSimulator(puzzles, 10);
+
+            System.out.print("> Testing the optimal strategy: ");
+            GameSimulator.Results optimal = simulator.simulate(GameSimulator.OPTIMAL, 2000, 3);
+            msgTest = optimal.matches() == 2000 && optimal.winRate() == 1 &&
+                      optimal.meanSwapsUsed() == 10 && optimal.winsWithSwaps(10) == 2000 ? "OK" :
+                      "\n\n ERROR: the optimal strategy did not win with 10 swaps: " + optimal + " \n";
+		    System.out.println(msgTest);
+
+            System.out.print("> Testing the random and greedy strategies: ");
+            GameSimulator.Results random = simulator.simulate(GameSimulator.RANDOM, 2000, 3);
+            GameSimulator.Results greedy = simulator.simulate(GameSimulator.GREEDY, 2000, 3);
+            msgTest = random.winRate() < greedy.winRate() &&
+                      greedy.meanSwapsUsedInWins() >= 10 ? "OK" :
+                      "\n\n ERROR: unexpected results: " + random + " / " + greedy + " \n";
+		    System.out.println(msgTest);
+
+            System.out.print("> Testing the reproducibility with a seed: ");
+            msgTest = simulator.simulate(GameSimulator.RANDOM, 2000, 3).toString()
+                               .equals(random.toString()) ? "OK" :
+                      "\n\n ERROR: the same seed gave different results \n";
+		    System.out.println(msgTest);
+
+            System.out.print("> Testing a swap budget: ");
+            // com 9 trocas nenhum jogo de 10 trocas e ganho, com 30 o aleatorio ganha mais
+            GameSimulator short9 = new GameSimulator(puzzles, 10, 9);
+            GameSimulator long30 = new GameSimulator(puzzles, 10, 30);
+            GameSimulator.Results lost = short9.simulate(GameSimulator.OPTIMAL, 2000, 3);
+            GameSimulator.Results longer = long30.simulate(GameSimulator.RANDOM, 2000, 3);
+            msgTest = simulator.swapBudget() == puzzles[0].shuffleSwaps() + 5 &&
+                      short9.swapBudget() == 9 && lost.matches() == 2000 && lost.wins() == 0 &&
+                      lost.meanSwapsUsed() == 9 && longer.winRate() > random.winRate() ? "OK" :
+                      "\n\n ERROR: the swap budget was not respected: " + lost + " / " +
+                      longer + " \n";
+		    System.out.println(msgTest);
+        } catch (Exception e) {
+			msgTest = "\n\n ERROR: Failed because of " + e.toString() + "\n";
+			System.out.println(msgTest);
+		}
+        System.out.println(">>>>>>>>>>>>>>>>>>>>>>><<<<<<<<<<<<<<<<<<<<<<<");
+    }
+
     /**
 	 * Testa as funcoes e metodos da classe WaffleGame
 	 * - static validGrid(...)
@@ -239,10 +1394,11 @@ public class WaffleTest {
 	 * - swap(...)
 	 * - maxSwaps()
      * - remainingSwaps()
-     * - getCurrentGrid()
+     * - getCurrentGrid(), letterAt(...)
      * - puzzleFound()
      * - puzzleFound()
      * - restart()
+     * - undo(), redo(), jumpToMove(...)
 	 */
     private static void testWaffleGame() {
         String msgTest = "";
@@ -291,6 +1447,15 @@ public class WaffleTest {
             System.out.print("> Testing method getCurrentGrid: ");
             char[][] userGrid = game.getCurrentGrid();
             boolean theSame = areEqual(userGrid, initialGrid);
+            // a grelha devolvida e uma copia, que nao muda o jogo
+            userGrid[0][0] = userGrid[0][0] == 'A' ? 'B' : 'A';
+            theSame &= areEqual(game.getCurrentGrid(), initialGrid);
+            for (int i = 0; i < size; i++) {
+                for (int j = 0; j < size; j++) {
+                    theSame &= !game.validPosition(i + 1, j + 1) ||
+                               game.letterAt(i + 1, j + 1) == initialGrid[i][j];
+                }
+            }
             msgTest = theSame ? "OK" : "\n\n ERROR: incorrect current grid \n";
 		    System.out.println(msgTest);
 
@@ -353,6 +1518,75 @@ public class WaffleTest {
             msgTest = coincidesWithInitial && game.maxSwaps() == 5*(size-3)+5 ? "OK" : 
                      "\n\n ERROR: the method have not restarted the game correctly \n";
 		    System.out.println(msgTest);
+
+            System.out.print("  >> clues after restart: ");
+            // as pistas voltam a ser as de um jogo novo com a mesma quadricula
+            char[][] restartedGrid = new char[size][];
+            for (int i = 0; i < size; i++) {
+                restartedGrid[i] = currentGrid[i].clone();
+            }
+            WaffleGame freshGame = new WaffleGame(puzzle, restartedGrid);
+            boolean cluesRestarted = true;
+            for (int i = 1; i <= size; i++) {
+                for (int j = 1; j <= size; j++) {
+                    if (game.validPosition(i, j)) {
+                        cluesRestarted &= game.clue(i, j) == freshGame.clue(i, j);
+                    }
+                }
+            }
+            msgTest = cluesRestarted ? "OK" : 
+                     "\n\n ERROR: the clues were not restarted with the grid \n";
+		    System.out.println(msgTest);
+
+            System.out.println("> Testing methods undo, redo and jumpToMove");
+
+            System.out.print("  >> undo: ");
+            // o restart anterior pode ser refeito a partir do registo de trocas
+            game.redo();
+            game.swap(3,2,5,2);
+            game.undo();
+            game.undo();
+            msgTest = areEqual(initialGrid, game.getCurrentGrid()) && !game.canUndo() &&
+                      game.remainingSwaps() == game.maxSwaps() ? "OK" : 
+                     "\n\n ERROR: the method did not undo the swaps \n";
+		    System.out.println(msgTest);
+
+            System.out.print("  >> redo and jumpToMove: ");
+            game.jumpToMove(2);
+            boolean redone = game.currentMove() == 2 && !game.canRedo() &&
+                             game.remainingSwaps() == game.maxSwaps() - 2 &&
+                             game.getCurrentGrid()[0][1] == 'N' &&
+                             game.getCurrentGrid()[2][1] == 'H';
+            game.undo();
+            game.redo();
+            msgTest = redone && game.getCurrentGrid()[4][1] == 'U' ? "OK" : 
+                     "\n\n ERROR: the methods did not redo the swaps \n";
+		    System.out.println(msgTest);
+
+            System.out.print("> Testing method nrChangedPositions: ");
+            // so mudam as posicoes cuja letra ou pista mudou com a troca, o undo ou o restart
+            boolean changedOk = true;
+            for (int change = 0; change < 3; change++) {
+                char[][] gridBefore = new char[size][];
+                for (int i = 0; i < size; i++) {
+                    gridBefore[i] = game.getCurrentGrid()[i].clone();
+                }
+                LetterStatus[][] cluesBefore = new LetterStatus[size][size];
+                game.clueAll(cluesBefore);
+                if (change == 0) {
+                    game.swap(1,2,3,2);
+                }
+                else if (change == 1) {
+                    game.undo();
+                }
+                else {
+                    game.restart();
+                }
+                changedOk &= changedPositionsOk(game, gridBefore, cluesBefore);
+            }
+            msgTest = changedOk ? "OK" : 
+                     "\n\n ERROR: the positions changed are not the ones whose letter or clue changed \n";
+		    System.out.println(msgTest);
         } catch (Exception e) {
 			msgTest = "\n\n ERROR: Failed because of " + e.toString() + "\n";
 			System.out.println(msgTest);
@@ -360,6 +1594,34 @@ public class WaffleTest {
         System.out.println(">>>>>>>>>>>>>>>>>>>>>>><<<<<<<<<<<<<<<<<<<<<<<");
     }
 
+    /**
+     * Funcao auxiliar que verifica que as posicoes alteradas de um jogo sao exatamente as que
+     * mudaram de letra ou de pista, cada uma uma so vez
+     * @param game jogo depois da alteracao
+     * @param gridBefore matriz antes da alteracao
+     * @param cluesBefore pistas antes da alteracao
+     * @return true se as posicoes alteradas sao as esperadas e false caso contrario
+     */
+    private static boolean changedPositionsOk(WaffleGame game, char[][] gridBefore,
+                                              LetterStatus[][] cluesBefore) {
+        boolean[][] listed = new boolean[size][size];
+        boolean ok = true;
+        for (int k = 0; k < game.nrChangedPositions(); k++) {
+            int row = game.changedRow(k);
+            int col = game.changedCol(k);
+            ok &= !listed[row - 1][col - 1];
+            listed[row - 1][col - 1] = true;
+        }
+        for (int row = 1; row <= size; row++) {
+            for (int col = 1; col <= size; col++) {
+                boolean changed = game.getCurrentGrid()[row - 1][col - 1] != gridBefore[row - 1][col - 1] ||
+                                  game.clue(row, col) != cluesBefore[row - 1][col - 1];
+                ok &= !game.validPosition(row, col) || changed == listed[row - 1][col - 1];
+            }
+        }
+        return ok;
+    }
+
     /**
 	 * Funcao auxiliar que testa a funcao de validacao da classe WaffleGame:
 	 * - static validGrid(...)
@@ -389,9 +1651,25 @@ public class WaffleTest {
                                               {'T', 'H', 'E', 'S', 'E'}
                                               };
         boolean test2 = WaffleGame.validGrid(puzzle, invalidGrid2);
-        msgTest = !test1 && !test2 ? "OK" : 
+        char[][] accentedGrid = new char[size][];
+        for (int i = 0; i < size; i++) {
+            accentedGrid[i] = initialGrid[i].clone();
+        }
+        accentedGrid[0][0] = '\u00C7';
+        boolean test3 = WaffleGame.validGrid(puzzle, accentedGrid);
+        msgTest = !test1 && !test2 && !test3 ? "OK" : 
                   "\n\n ERROR: the function did validate an invalid grid \n";
 		System.out.println(msgTest);
+
+        System.out.println("> Testing function checkGrid");
+        System.out.print("  >> on the reason of invalid grids: ");
+        msgTest = WaffleGame.checkGrid(puzzle, initialGrid) == GridStatus.VALID &&
+                  WaffleGame.checkGrid(null, initialGrid) == GridStatus.NULL_PUZZLE_OR_GRID &&
+                  WaffleGame.checkGrid(puzzle, invalidGrid1) == GridStatus.DIFFERENT_LETTERS &&
+                  WaffleGame.checkGrid(puzzle, invalidGrid2) == GridStatus.INVALID_LETTER &&
+                  WaffleGame.checkGrid(puzzle, accentedGrid) == GridStatus.INVALID_LETTER ? "OK" : 
+                  "\n\n ERROR: the function did not identify the reason of an invalid grid \n";
+		System.out.println(msgTest);
     }
 
     /**
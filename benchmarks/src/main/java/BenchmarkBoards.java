@@ -0,0 +1,267 @@
+import java.util.SplittableRandom;
+
+/** 
+ * Implements the operations measured by the benchmarks over the puzzles of the
+ * PuzzleGenerator (sizes 5 and 7) or over random puzzles (larger sizes, where the words do
+ * not need to be real), cycling through pre-built puzzles and shuffled grids so that only the
+ * measured operation runs in each call.
+ */
+public class BenchmarkBoards implements wafflebench.Boards {
+
+    //The number of shuffled grids prepared for each puzzle
+    private static final int GRIDS_PER_PUZZLE = 8;
+
+    //The number of random puzzles built for the sizes that the PuzzleGenerator does not have
+    private static final int RANDOM_PUZZLES = 64;
+
+    //The number of swaps of the game used by rewindAndReplay
+    private static final int EXPLORED_SWAPS = 8;
+
+    private int size;
+    private SplittableRandom r;
+
+    //The puzzles, the shuffled grids prepared and the games built with them
+    private Puzzle[] puzzles;
+    private char[][][] grids;
+    private WaffleGame[] games;
+
+    //The matrix reused by seededShuffledGrid
+    private char[][] buffer;
+
+    //The positions with letters of the grids, as {row, col}
+    private int[][] positions;
+
+    //The next board to use and the games where swapAndCheck swaps and rewindAndReplay undoes
+    private int next;
+    private WaffleGame current;
+    private WaffleGame explored;
+
+    //Games with half of their optimal swaps made, used by moveAndHint
+    private WaffleGame[] midGames;
+
+    @Override
+    public void setUp(int size, long seed) {
+        this.size = size;
+        this.r = new SplittableRandom(seed);
+        if (size <= 7) {
+            PuzzleGenerator generator = new PuzzleGenerator(size, true);
+            this.puzzles = new Puzzle[generator.nrPuzzles()];
+            for (int id = 0; id < this.puzzles.length; id++) {
+                this.puzzles[id] = new Puzzle(size, generator.getHorizontalWords(id),
+                                              generator.getVerticalWords(id));
+            }
+        }
+        else {
+            this.puzzles = new Puzzle[RANDOM_PUZZLES];
+            for (int id = 0; id < this.puzzles.length; id++) {
+                this.puzzles[id] = randomPuzzle();
+            }
+        }
+        this.grids = new char[this.puzzles.length * GRIDS_PER_PUZZLE][][];
+        this.games = new WaffleGame[this.grids.length];
+
+        for (int id = 0; id < this.puzzles.length; id++) {
+            for (int g = 0; g < GRIDS_PER_PUZZLE; g++) {
+                int k = id * GRIDS_PER_PUZZLE + g;
+                this.grids[k] = this.puzzles[id].getShuffledGrid(this.r.nextLong());
+                this.games[k] = new WaffleGame(this.puzzles[id], copy(this.grids[k]));
+            }
+        }
+
+        this.buffer = new char[size][size];
+        this.positions = new int[CompactBoard.nrLetters(size)][];
+        int k = 0;
+        for (int row = 1; row <= size; row++) {
+            for (int col = 1; col <= size; col++) {
+                if (row % 2 == 1 || col % 2 == 1) {
+                    this.positions[k++] = new int[] {row, col};
+                }
+            }
+        }
+        this.current = new WaffleGame(this.puzzles[0], copy(this.grids[0]));
+        this.midGames = new WaffleGame[this.grids.length];
+        for (int g = 0; g < this.grids.length; g++) {
+            this.midGames[g] = new WaffleGame(this.puzzles[g / GRIDS_PER_PUZZLE],
+                                              copy(this.grids[g]));
+            int[][] swaps = new WaffleSolver(this.puzzles[g / GRIDS_PER_PUZZLE], this.grids[g])
+                                .getSwaps();
+            for (int s = 0; s < swaps.length / 2; s++) {
+                this.midGames[g].swap(swaps[s][0], swaps[s][1], swaps[s][2], swaps[s][3]);
+            }
+        }
+        this.explored = new WaffleGame(this.puzzles[0], copy(this.grids[0]));
+        for (int s = 0; s < EXPLORED_SWAPS && !this.explored.puzzleFound(); s++) {
+            randomSwap(this.explored);
+        }
+    }
+
+    @Override
+    public Object buildGrid() {
+        return nextPuzzle().buildGrid();
+    }
+
+    @Override
+    public Object shuffledGrid() {
+        return nextPuzzle().getShuffledGrid();
+    }
+
+    @Override
+    public Object seededShuffledGrid() {
+        return nextPuzzle().getShuffledGrid(this.r, this.buffer);
+    }
+
+    @Override
+    public boolean validGrid() {
+        int k = nextBoard();
+        return WaffleGame.validGrid(this.puzzles[k / GRIDS_PER_PUZZLE], this.grids[k]);
+    }
+
+    @Override
+    public Object clueEveryPosition() {
+        WaffleGame game = this.games[nextBoard()];
+        LetterStatus status = null;
+        for (int[] position : this.positions) {
+            status = game.clue(position[0], position[1]);
+        }
+        return status;
+    }
+
+    @Override
+    public String render() {
+        return this.games[nextBoard()].toString();
+    }
+
+    @Override
+    public boolean swapAndCheck() {
+        randomSwap(this.current);
+        boolean isOver = this.current.isOver();
+        if (isOver) {
+            this.current.restart();
+        }
+        return isOver;
+    }
+
+    @Override
+    public Object move() {
+        randomSwap(this.current);
+        LetterStatus status = null;
+        for (int[] position : this.positions) {
+            status = this.current.clue(position[0], position[1]);
+        }
+        if (this.current.isOver()) {
+            this.current.restart();
+        }
+        return status;
+    }
+
+    @Override
+    public Object moveChangedPositions() {
+        randomSwap(this.current);
+        LetterStatus status = null;
+        for (int k = 0; k < this.current.nrChangedPositions(); k++) {
+            status = this.current.clue(this.current.changedRow(k), this.current.changedCol(k));
+        }
+        if (this.current.isOver()) {
+            this.current.restart();
+        }
+        return status;
+    }
+
+    @Override
+    public Object moveAndHint() {
+        WaffleGame game = this.midGames[nextBoard()];
+        randomSwap(game);
+        int[] hint = game.hint();
+        game.undo();
+        return hint;
+    }
+
+    @Override
+    public int rewindAndReplay() {
+        this.explored.restart();
+        this.explored.jumpToMove(this.explored.nrMoves());
+        return this.explored.remainingSwaps();
+    }
+
+    @Override
+    public int randomPlaythrough() {
+        int k = nextBoard();
+        WaffleGame game = new WaffleGame(this.puzzles[k / GRIDS_PER_PUZZLE], copy(this.grids[k]));
+        int swaps = 0;
+        while (!game.isOver()) {
+            randomSwap(game);
+            swaps++;
+        }
+        return swaps;
+    }
+
+    /** 
+     * Swaps two random swappable letters of a game.
+     *
+     * @param game the game
+     * @requires {@code !game.puzzleFound()}
+     */
+    private void randomSwap(WaffleGame game) {
+        int[] first;
+        int[] second;
+        do {
+            first = this.positions[this.r.nextInt(this.positions.length)];
+        } while (!game.swappablePosition(first[0], first[1]));
+        do {
+            second = this.positions[this.r.nextInt(this.positions.length)];
+        } while (second == first || !game.swappablePosition(second[0], second[1]));
+
+        game.swap(first[0], first[1], second[0], second[1]);
+    }
+
+    /** 
+     * @return a puzzle with random letters, whose words cross where they should
+     */
+    private Puzzle randomPuzzle() {
+        char[][] grid = new char[this.size][this.size];
+        for (int i = 0; i < this.size; i += 2) {
+            for (int j = 0; j < this.size; j++) {
+                grid[i][j] = (char) ('A' + this.r.nextInt(26));
+                grid[j][i] = (char) ('A' + this.r.nextInt(26));
+            }
+        }
+        String[] hWords = new String[(this.size + 1) / 2];
+        String[] vWords = new String[(this.size + 1) / 2];
+        char[] column = new char[this.size];
+        for (int w = 0; w < hWords.length; w++) {
+            hWords[w] = new String(grid[2 * w]);
+            for (int i = 0; i < this.size; i++) {
+                column[i] = grid[i][2 * w];
+            }
+            vWords[w] = new String(column);
+        }
+        return new Puzzle(this.size, hWords, vWords);
+    }
+
+    /** 
+     * @return the next puzzle, cycling through all of them
+     */
+    private Puzzle nextPuzzle() {
+        return this.puzzles[nextBoard() / GRIDS_PER_PUZZLE];
+    }
+
+    /** 
+     * @return the index of the next shuffled grid, cycling through all of them
+     */
+    private int nextBoard() {
+        this.next = (this.next + 1) % this.grids.length;
+        return this.next;
+    }
+
+    /** 
+     * @param grid the grid
+     * @return a copy of the grid
+     */
+    private char[][] copy(char[][] grid) {
+        char[][] copy = new char[this.size][];
+        for (int i = 0; i < this.size; i++) {
+            copy[i] = grid[i].clone();
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,98 @@
+package wafflebench;
+
+/** 
+ * The operations of the game measured by the benchmarks, over a board of a given size.
+ *
+ * JMH only accepts benchmarks in a named package and the classes of the game are in the
+ * default package, which named packages cannot import, so the benchmarks reach the game
+ * through this interface, implemented by BenchmarkBoards in the default package.
+ */
+public interface Boards {
+
+    /** 
+     * Prepares the puzzles and grids used by the other operations.
+     *
+     * @param size the number of characters of the words of the puzzles (odd, from 5 to 21)
+     * @param seed the seed of the random choices of the operations
+     */
+    void setUp(int size, long seed);
+
+    /** 
+     * @return the grid of the next puzzle, as built by Puzzle.buildGrid
+     */
+    Object buildGrid();
+
+    /** 
+     * @return a shuffled grid of the next puzzle, as built by Puzzle.getShuffledGrid
+     */
+    Object shuffledGrid();
+
+    /** 
+     * @return a shuffled grid of the next puzzle, written by Puzzle.getShuffledGrid in a
+     *         reused matrix with a reused generator
+     */
+    Object seededShuffledGrid();
+
+    /** 
+     * @return if the next shuffled grid is valid, according to WaffleGame.validGrid
+     */
+    boolean validGrid();
+
+    /** 
+     * @return the clue of every valid position of the next game, as given by WaffleGame.clue
+     */
+    Object clueEveryPosition();
+
+    /** 
+     * @return the textual representation of the next game, as given by WaffleGame.toString
+     */
+    String render();
+
+    /** 
+     * Makes a random swap in the current game, followed by WaffleGame.isOver, and restarts
+     * the game once it is over.
+     *
+     * @return if the game was over after the swap
+     */
+    boolean swapAndCheck();
+
+    /** 
+     * Makes a move in the current game as the GUI does: a random swap followed by reading the
+     * clue of every position, restarting the game once it is over.
+     *
+     * @return the clue of the last position
+     */
+    Object move();
+
+    /** 
+     * Makes a move in the current game reading only the clues of the positions changed by
+     * the swap (WaffleGame.nrChangedPositions), as a GUI that repaints only those does,
+     * restarting the game once it is over.
+     *
+     * @return the clue of the last position changed
+     */
+    Object moveChangedPositions();
+
+    /** 
+     * Makes a random swap in the next of a set of games already halfway played, asks for a
+     * hint (which cannot reuse the plan of a previous one) and undoes the swap.
+     *
+     * @return the hint
+     */
+    Object moveAndHint();
+
+    /** 
+     * Undoes every swap of a game with a few random swaps, as WaffleGame.restart does, and
+     * then redoes them.
+     *
+     * @return the remaining swaps of the game after redoing the swaps
+     */
+    int rewindAndReplay();
+
+    /** 
+     * Plays a new game with random swaps until it is over.
+     *
+     * @return the number of swaps made
+     */
+    int randomPlaythrough();
+}
@@ -0,0 +1,102 @@
+package wafflebench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** 
+ * Benchmarks of the hot paths of Puzzle and WaffleGame, for the puzzles of size 5 and 7 and
+ * for random puzzles of the larger sizes. Run with -prof gc to get the allocation rate of
+ * each one, or with -p size=21 to measure a single size.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WaffleBenchmarks {
+
+    @Param({"5", "7", "9", "15", "21"})
+    public int size;
+
+    private Boards boards;
+
+    @Setup(Level.Trial)
+    public void setUp() throws ReflectiveOperationException {
+        this.boards = (Boards) Class.forName("BenchmarkBoards").getDeclaredConstructor()
+                                    .newInstance();
+        this.boards.setUp(this.size, 42);
+    }
+
+    @Benchmark
+    public Object puzzleBuildGrid() {
+        return this.boards.buildGrid();
+    }
+
+    @Benchmark
+    public Object puzzleGetShuffledGrid() {
+        return this.boards.shuffledGrid();
+    }
+
+    @Benchmark
+    public Object puzzleGetSeededShuffledGrid() {
+        return this.boards.seededShuffledGrid();
+    }
+
+    @Benchmark
+    public boolean waffleGameValidGrid() {
+        return this.boards.validGrid();
+    }
+
+    @Benchmark
+    public Object waffleGameClue() {
+        return this.boards.clueEveryPosition();
+    }
+
+    @Benchmark
+    public String waffleGameToString() {
+        return this.boards.render();
+    }
+
+    @Benchmark
+    public boolean waffleGameSwapAndIsOver() {
+        return this.boards.swapAndCheck();
+    }
+
+    @Benchmark
+    public Object waffleGameMove() {
+        return this.boards.move();
+    }
+
+    @Benchmark
+    public Object waffleGameMoveChangedPositions() {
+        return this.boards.moveChangedPositions();
+    }
+
+    @Benchmark
+    public Object waffleGameMoveAndHint() {
+        return this.boards.moveAndHint();
+    }
+
+    @Benchmark
+    public int waffleGameRewindAndReplay() {
+        return this.boards.rewindAndReplay();
+    }
+
+    @Benchmark
+    public int randomPlaythrough() {
+        return this.boards.randomPlaythrough();
+    }
+}